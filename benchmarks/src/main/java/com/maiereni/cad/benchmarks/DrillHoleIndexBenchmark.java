@@ -0,0 +1,119 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.benchmarks;
+
+import com.maiereni.cad.xnc.DrillHoleIndex;
+import com.maiereni.cad.xnc.DrillHoleTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to build a DrillHoleIndex over random holes and the time of a batch of rectangle, radius
+ * and nearest neighbour queries, compared with a linear scan of the table for the same rectangles
+ *
+ * @author Petre Maierean
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DrillHoleIndexBenchmark {
+    private static final int QUERIES = 1000;
+
+    @Param({"100000", "1000000"})
+    public int holes;
+
+    private DrillHoleTable table;
+    private DrillHoleIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        table = new DrillHoleTable(holes);
+        for (int i = 0; i < holes; i++) {
+            table.add(random.nextFloat() * 300f, -random.nextFloat() * 200f, i % 2);
+        }
+        index = new DrillHoleIndex(table);
+    }
+
+    @Benchmark
+    public DrillHoleIndex build() {
+        return new DrillHoleIndex(table);
+    }
+
+    @Benchmark
+    public long rectangle() {
+        long ret = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float x = getX(q), y = getY(q);
+            ret += index.findInRectangle(x, y - 2f, x + 2f, y).length;
+        }
+        return ret;
+    }
+
+    @Benchmark
+    public long radius() {
+        long ret = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            ret += index.findInRadius(getX(q), getY(q), 1f).length;
+        }
+        return ret;
+    }
+
+    @Benchmark
+    public long nearest() {
+        long ret = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            ret += index.findNearest(getX(q), getY(q), 10).length;
+        }
+        return ret;
+    }
+
+    @Benchmark
+    public long scanRectangle() {
+        long ret = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float x = getX(q), y = getY(q);
+            ret += scanRectangle(x, y - 2f, x + 2f, y);
+        }
+        return ret;
+    }
+
+    private static float getX(int q) {
+        return (q % 100) * 3f;
+    }
+
+    private static float getY(int q) {
+        return -(q / 10) * 2f;
+    }
+
+    private int scanRectangle(float minX, float minY, float maxX, float maxY) {
+        int ret = 0;
+        for (int i = 0; i < table.size(); i++) {
+            float x = table.getX(i), y = table.getY(i);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+}
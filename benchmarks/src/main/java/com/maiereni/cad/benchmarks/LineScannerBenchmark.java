@@ -0,0 +1,129 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.benchmarks;
+
+import com.maiereni.cad.xnc.XNCHandler;
+import com.maiereni.cad.xnc.XNCLineScanner;
+import com.maiereni.cad.xnc.XNCParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and the vector line scanners on a file of several GB: the scan of the lines alone and the
+ * mapped parse of the file into a handler which keeps nothing. The file repeats the body of a generated drill
+ * file until it has the requested size. The forked JVM runs with the incubator module of the Vector API. The
+ * vector scanner is only there when the drlparser is built with the vector profile, otherwise both cases
+ * measure the scalar scanner
+ *
+ * @author Petre Maierean
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx1g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class LineScannerBenchmark {
+    private static final int MAPPING_WINDOW = 1 << 30;
+
+    @Param({"2048"})
+    public int megabytes;
+
+    private File file;
+    private XNCLineScanner vector;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        vector = XNCLineScanner.getVector();
+        if (vector == null) {
+            vector = XNCLineScanner.getScalar();
+        }
+        XNCGenerator generator = new XNCGenerator();
+        generator.setHoles(1_000_000);
+        String content = generator.generate();
+        int body = content.indexOf("%\nG90\nG05\n") + 10, end = content.lastIndexOf("T0\n");
+        String holes = content.substring(body, end);
+        file = File.createTempFile("scanner", ".drl");
+        long size = (long) megabytes << 20;
+        try (Writer writer = new BufferedWriter(new FileWriter(file), 1 << 20)) {
+            writer.write(content, 0, body);
+            for (long written = body; written < size; written += holes.length()) {
+                writer.write(holes);
+            }
+            writer.write("T0\nM30\n");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public long scalarLines() throws Exception {
+        return countLines(XNCLineScanner.getScalar());
+    }
+
+    @Benchmark
+    public long vectorLines() throws Exception {
+        return countLines(vector);
+    }
+
+    @Benchmark
+    public void scalarParse() throws Exception {
+        parse(XNCLineScanner.getScalar());
+    }
+
+    @Benchmark
+    public void vectorParse() throws Exception {
+        parse(vector);
+    }
+
+    private long countLines(XNCLineScanner scanner) throws Exception {
+        long ret = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; ) {
+                int length = (int) Math.min(size - position, MAPPING_WINDOW);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                // end the window on a line feed, so that no line is split
+                int last = length;
+                while (position + last < size && buffer.get(last - 1) != '\n') {
+                    last--;
+                }
+                ret += scanner.countLines(buffer, 0, last);
+                position += last;
+            }
+        }
+        return ret;
+    }
+
+    private void parse(XNCLineScanner scanner) throws Exception {
+        XNCParser parser = new XNCParser();
+        parser.setLineScanner(scanner);
+        parser.parse(file, new XNCHandler() {
+        });
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.benchmarks;
+
+import com.maiereni.cad.xnc.DrillHoleTable;
+import com.maiereni.cad.xnc.DrillSnapshotReader;
+import com.maiereni.cad.xnc.DrillSnapshotWriter;
+import com.maiereni.cad.xnc.Token;
+import com.maiereni.cad.xnc.XNCParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of XNCParser on generated content, parsed from a String, from a Reader and from a
+ * File, by mapping the file, into a table of drill holes, in parallel chunks, and the load of the table from a
+ * binary snapshot. Besides the parses per second, the lines per second are reported as the "lines" counter. Run with the
+ * gc profiler to see the allocation rate, which BenchmarkRunner adds by default. The largest contents need a
+ * large heap, for example -jvmArgsAppend -Xmx16g with -p holes=10000000
+ *
+ * @author Petre Maierean
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ParserBenchmark {
+    @Param({"8"})
+    public int tools;
+    @Param({"100000", "1000000"})
+    public int holes;
+    @Param({"3"})
+    public int precision;
+
+    private final XNCParser parser = new XNCParser();
+    private String content;
+    private File file;
+    private File snapshot;
+    private long lines;
+
+    /**
+     * Counts the lines parsed, so that JMH reports them as a rate next to the parses
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Lines {
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        XNCGenerator generator = new XNCGenerator();
+        generator.setTools(tools);
+        generator.setHoles(holes);
+        generator.setPrecision(precision);
+        content = generator.generate();
+        file = File.createTempFile("benchmark", ".drl");
+        lines = generator.write(file);
+        snapshot = File.createTempFile("benchmark", ".xncs");
+        new DrillSnapshotWriter().write(parser.parseTable(file), snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+        if (snapshot != null) {
+            snapshot.delete();
+        }
+    }
+
+    @Benchmark
+    public List<Token> parseString(Lines counter) throws Exception {
+        counter.lines += lines;
+        return parser.parse(content);
+    }
+
+    @Benchmark
+    public List<Token> parseReader(Lines counter) throws Exception {
+        counter.lines += lines;
+        return parser.parse(new StringReader(content));
+    }
+
+    @Benchmark
+    public List<Token> parseFile(Lines counter) throws Exception {
+        counter.lines += lines;
+        return parser.parse(file);
+    }
+
+    @Benchmark
+    public List<Token> parseMapped(Lines counter) throws Exception {
+        counter.lines += lines;
+        return parser.parseMapped(file);
+    }
+
+    @Benchmark
+    public DrillHoleTable parseTable(Lines counter) throws Exception {
+        counter.lines += lines;
+        return parser.parseTable(file);
+    }
+
+    @Benchmark
+    public List<Token> parseParallel(Lines counter) throws Exception {
+        counter.lines += lines;
+        return parser.parseParallel(file);
+    }
+
+    @Benchmark
+    public DrillHoleTable parseTableParallel(Lines counter) throws Exception {
+        counter.lines += lines;
+        return parser.parseTableParallel(file);
+    }
+
+    @Benchmark
+    public DrillHoleTable loadSnapshot(Lines counter) throws Exception {
+        counter.lines += lines;
+        return new DrillSnapshotReader().read(snapshot);
+    }
+}
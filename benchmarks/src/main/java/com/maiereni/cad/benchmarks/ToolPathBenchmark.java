@@ -0,0 +1,91 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.benchmarks;
+
+import com.maiereni.cad.toolPath.ToolPathGenerator;
+import com.maiereni.cad.toolPath.bo.DrillOrderStrategy;
+import com.maiereni.cad.toolPath.bo.RoutingArguments;
+import com.maiereni.cad.xnc.XNCParseResult;
+import com.maiereni.cad.xnc.XNCParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the generation of the toolpath scales with the number of threads of the pool of the
+ * ToolPathGenerator. The content is parsed once per trial, so only the generation is measured, to a sink
+ * which discards the output and to the map of the toolpath. The scaling is bound by the number of tools, as
+ * each tool is generated in its own task
+ *
+ * @author Petre Maierean
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ToolPathBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+    @Param({"8"})
+    public int tools;
+    @Param({"100000"})
+    public int holes;
+
+    private ForkJoinPool pool;
+    private ToolPathGenerator generator;
+    private XNCParseResult parseResult;
+    private RoutingArguments arguments;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        XNCGenerator xncGenerator = new XNCGenerator();
+        xncGenerator.setTools(tools);
+        xncGenerator.setHoles(holes);
+        parseResult = new XNCParser().parseWithStatus(new StringReader(xncGenerator.generate()));
+        arguments = new RoutingArguments();
+        arguments.setUnitConversionRate(0.025f);
+        arguments.setZ0(1);
+        arguments.setZ1(-2);
+        arguments.setDrillOrder(DrillOrderStrategy.nearestNeighbour);
+        pool = new ForkJoinPool(threads);
+        generator = new ToolPathGenerator(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void generateToSink() throws Exception {
+        generator.generateToolpath(parseResult, arguments, tool -> Writer.nullWriter());
+    }
+
+    @Benchmark
+    public Map<String, String> generateToMap() throws Exception {
+        return generator.generateToolpath(parseResult, arguments);
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.benchmarks;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Generates synthetic XNC content which looks like the drill file of a board: a header with the tool
+ * definitions, then for each tool the rows of pads of components and, for the smallest tools, scattered vias.
+ * The smaller tools get more holes, as on real boards. The content only depends on the settings, so two runs
+ * with the same settings produce the same bytes
+ *
+ * @author Petre Maierean
+ */
+public class XNCGenerator {
+    private static final Logger logger = LogManager.getLogger(XNCGenerator.class);
+    public static final int MAX_HOLES = 10_000_000;
+    private static final float[] DIAMETERS = {0.3f, 0.4f, 0.6f, 0.8f, 1.0f, 1.2f, 1.5f, 2.0f, 3.0f, 3.2f};
+    private static final float[] PITCHES = {1.27f, 2.0f, 2.54f, 5.08f};
+    private int tools = 8;
+    private int holes = 100_000;
+    private int precision = 3;
+    private long seed = 1;
+    private float width = 300f, height = 200f;
+
+    /**
+     * Write the content to a file. Takes the file, the number of holes, the number of tools and the precision as
+     * arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            logger.error("Usage: XNCGenerator file [holes] [tools] [precision]");
+            return;
+        }
+        XNCGenerator generator = new XNCGenerator();
+        if (args.length > 1) {
+            generator.setHoles(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            generator.setTools(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            generator.setPrecision(Integer.parseInt(args[3]));
+        }
+        long lines = generator.write(new File(args[0]));
+        logger.info("Generated {} lines in {}", lines, args[0]);
+    }
+
+    /**
+     * Write the content to a file
+     *
+     * @param f
+     * @return the number of lines written
+     * @throws Exception
+     */
+    public long write(File f) throws Exception {
+        try (Writer writer = new BufferedWriter(new FileWriter(f), 1 << 16)) {
+            return write(writer);
+        }
+    }
+
+    /**
+     * Generate the content in memory
+     *
+     * @return
+     * @throws Exception
+     */
+    public String generate() throws Exception {
+        // about 20 characters per hole
+        StringWriter ret = new StringWriter(Math.max(holes, 1) * 20);
+        write(ret);
+        return ret.toString();
+    }
+
+    /**
+     * Write the content
+     *
+     * @param writer
+     * @return the number of lines written
+     * @throws Exception the settings are out of range
+     */
+    public long write(Writer writer) throws Exception {
+        if (tools < 1 || tools > 99) {
+            throw new Exception("The number of tools must be between 1 and 99");
+        }
+        if (holes < 0 || holes > MAX_HOLES) {
+            throw new Exception("The number of holes must be between 0 and " + MAX_HOLES);
+        }
+        if (precision < 1 || precision > 6) {
+            throw new Exception("The precision must be between 1 and 6 digits");
+        }
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(64);
+        long ret = 0;
+        sb.append("M48\n; generated with ").append(tools).append(" tools, ").append(holes)
+                .append(" holes and ").append(precision).append(" digits\nFMAT,2\nMETRIC\n");
+        ret += 4;
+        for (int i = 1; i <= tools; i++) {
+            sb.append('T').append(i).append('C');
+            appendFixed(sb, Math.round(getDiameter(i) * 1000), 3);
+            sb.append('\n');
+            ret++;
+        }
+        sb.append("%\nG90\nG05\n");
+        ret += 3;
+        writer.append(sb);
+        int[] counts = getHoleCounts();
+        long scale = pow10(precision);
+        for (int i = 1; i <= tools; i++) {
+            if (counts[i - 1] == 0) {
+                continue;
+            }
+            sb.setLength(0);
+            writer.append(sb.append('T').append(i).append('\n'));
+            ret++;
+            // the smallest tool drills the vias, the others the pads of components
+            boolean vias = i == 1 && tools > 1;
+            for (int written = 0; written < counts[i - 1]; ) {
+                int pads = vias ? 1 : Math.min(2 + random.nextInt(39), counts[i - 1] - written);
+                float pitch = PITCHES[random.nextInt(PITCHES.length)];
+                boolean horizontal = random.nextBoolean();
+                float x = random.nextFloat() * width, y = random.nextFloat() * height;
+                for (int p = 0; p < pads; p++) {
+                    float px = horizontal ? x + p * pitch : x, py = horizontal ? y : y - p * pitch;
+                    sb.setLength(0);
+                    sb.append('X');
+                    appendFixed(sb, Math.round(Math.min(px, width) * scale), precision);
+                    sb.append('Y');
+                    appendFixed(sb, -Math.round(Math.max(py, 0f) * scale), precision);
+                    writer.append(sb.append('\n'));
+                }
+                written += pads;
+                ret += pads;
+            }
+        }
+        writer.append("T0\nM30\n");
+        ret += 2;
+        return ret;
+    }
+
+    /**
+     * Get the diameter of a tool, from the usual drill sizes first
+     *
+     * @param tool the number of the tool, from 1
+     * @return
+     */
+    public float getDiameter(int tool) {
+        return tool <= DIAMETERS.length ? DIAMETERS[tool - 1] : 3.2f + (tool - DIAMETERS.length) * 0.1f;
+    }
+
+    /**
+     * Share the holes between the tools, in inverse proportion to the number of the tool
+     *
+     * @return the number of holes of each tool
+     */
+    public int[] getHoleCounts() {
+        int[] ret = new int[tools];
+        double sum = 0;
+        for (int i = 1; i <= tools; i++) {
+            sum += 1d / i;
+        }
+        int assigned = 0;
+        for (int i = 1; i <= tools; i++) {
+            ret[i - 1] = (int) (holes / (i * sum));
+            assigned += ret[i - 1];
+        }
+        ret[0] += holes - assigned;
+        return ret;
+    }
+
+    private static void appendFixed(StringBuilder sb, long units, int digits) {
+        if (units < 0) {
+            sb.append('-');
+            units = -units;
+        }
+        long scale = pow10(digits);
+        sb.append(units / scale).append('.');
+        String fraction = Long.toString(units % scale);
+        for (int i = fraction.length(); i < digits; i++) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    private static long pow10(int digits) {
+        long ret = 1;
+        for (int i = 0; i < digits; i++) {
+            ret *= 10;
+        }
+        return ret;
+    }
+
+    public int getTools() {
+        return tools;
+    }
+
+    public void setTools(int tools) {
+        this.tools = tools;
+    }
+
+    public int getHoles() {
+        return holes;
+    }
+
+    public void setHoles(int holes) {
+        this.holes = holes;
+    }
+
+    /**
+     * Get the number of digits after the decimal point of the coordinates
+     *
+     * @return
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void setPrecision(int precision) {
+        this.precision = precision;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public void setWidth(float width) {
+        this.width = width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public void setHeight(float height) {
+        this.height = height;
+    }
+}
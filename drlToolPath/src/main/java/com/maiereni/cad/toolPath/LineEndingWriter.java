@@ -0,0 +1,90 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Replaces the separators of the RML-1 commands with a line ending as they are written, so that every command
+ * goes on a line of its own. The line breaks written, "\n", "\r\n" or a lone "\r", are replaced with the same
+ * line ending, also when a "\r\n" is split between two writes
+ *
+ * @author Petre Maierean
+ */
+class LineEndingWriter extends FilterWriter {
+    private static final char SEPARATOR = ';';
+    private final String lineEnding;
+    private boolean afterReturn;
+
+    LineEndingWriter(Writer out, String lineEnding) {
+        super(out);
+        this.lineEnding = lineEnding;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (isLineEnd((char) c)) {
+            if (!(c == '\n' && afterReturn)) {
+                out.write(lineEnding);
+            }
+        } else {
+            out.write(c);
+        }
+        afterReturn = c == '\r';
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        int start = offset, end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = buffer[i];
+            if (isLineEnd(c)) {
+                out.write(buffer, start, i - start);
+                if (!(c == '\n' && afterReturn)) {
+                    out.write(lineEnding);
+                }
+                start = i + 1;
+            }
+            afterReturn = c == '\r';
+        }
+        out.write(buffer, start, end - start);
+    }
+
+    @Override
+    public void write(String s, int offset, int length) throws IOException {
+        int start = offset, end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = s.charAt(i);
+            if (isLineEnd(c)) {
+                out.write(s, start, i - start);
+                if (!(c == '\n' && afterReturn)) {
+                    out.write(lineEnding);
+                }
+                start = i + 1;
+            }
+            afterReturn = c == '\r';
+        }
+        out.write(s, start, end - start);
+    }
+
+    private static boolean isLineEnd(char c) {
+        return c == SEPARATOR || c == '\n' || c == '\r';
+    }
+}
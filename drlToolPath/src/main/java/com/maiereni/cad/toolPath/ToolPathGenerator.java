@@ -17,17 +17,29 @@
  */
 package com.maiereni.cad.toolPath;
 
+import com.maiereni.cad.rml1.ComplexCommandFormat;
 import com.maiereni.cad.rml1.bo.ComplexArgument;
 import com.maiereni.cad.rml1.bo.VertexArgument;
 import com.maiereni.cad.rml1.complex.MoveAndDrill;
+import com.maiereni.cad.rml1.complex.MoveAndDrillSession;
 import com.maiereni.cad.toolPath.bo.RoutingArguments;
 import com.maiereni.cad.toolPath.bo.RoutingPath;
+import com.maiereni.cad.toolPath.order.DrillOrder;
+import com.maiereni.cad.toolPath.order.GridStepSplitter;
+import com.maiereni.cad.toolPath.order.KMeansStepSplitter;
+import com.maiereni.cad.toolPath.order.NearestNeighbourDrillOrder;
+import com.maiereni.cad.toolPath.order.OptimizedDrillOrder;
+import com.maiereni.cad.toolPath.order.StepSplitter;
 import com.maiereni.cad.xnc.RN1PrinterStatus;
-import com.maiereni.cad.xnc.RN1PrinterStatusFactory;
+import com.maiereni.cad.xnc.RN1PrinterStatusCollector;
 import com.maiereni.cad.xnc.Token;
+import com.maiereni.cad.xnc.XNCArchiveParser;
+import com.maiereni.cad.xnc.XNCParseResult;
 import com.maiereni.cad.xnc.XNCParser;
+import com.maiereni.cad.xnc.XNCSelectionHandler;
+import com.maiereni.cad.xnc.XNCTokenIterator;
+import com.maiereni.cad.xnc.XNCTokenListHandler;
 import com.maiereni.cad.xnc.bo.DrillHole;
-import com.maiereni.cad.xnc.bo.SelectTool;
 import com.maiereni.cad.xnc.bo.Tool;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -35,14 +47,37 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * A class that converts an XNC drill file to instructions to drill in RNL-1
+ * A class that converts an XNC drill file to instructions to drill in RNL-1. The toolpath of each tool is
+ * generated on its own in a pool, and the results are returned in the order of the tools
  *
  * @author Petre Maierean
  */
 public class ToolPathGenerator {
     private static final Logger logger = LogManager.getLogger(ToolPathGenerator.class);
+    private static final Comparator<DrillHole> Y_ORDER = new Comparator<DrillHole>() {
+        @Override
+        public int compare(DrillHole o1, DrillHole o2) {
+            return Float.compare(o1.getY(), o2.getY());
+        }
+    };
+    private final ForkJoinPool pool;
+
+    public ToolPathGenerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a generator
+     *
+     * @param pool the pool to generate the toolpath of the tools on
+     */
+    public ToolPathGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
 
     /**
      * Generate toolpath from dlr string
@@ -62,7 +97,7 @@ public class ToolPathGenerator {
     }
 
     /**
-     * Generate toolpath from dlr file
+     * Generate toolpath from dlr file, which may be gzip compressed, decoded as ISO-8859-1
      *
      * @param drlFile
      * @param arguments the routing arguments
@@ -76,11 +111,81 @@ public class ToolPathGenerator {
         if (!drlFile.isFile()) {
             throw new Exception("Cannot file DRL file at " + drlFile.getPath());
         }
-        try (FileReader reader = new FileReader(drlFile)) {
+        try (FileInputStream is = new FileInputStream(drlFile)) {
+            return generateToolpathfromDrl(is, arguments);
+        }
+    }
+
+    /**
+     * Generate toolpath from a dlr stream, which is decompressed on the fly if it is gzip compressed, and decoded
+     * as ISO-8859-1
+     *
+     * @param drlStream
+     * @param arguments the routing arguments
+     * @return
+     * @throws Exception
+     */
+    public Map<String, String> generateToolpathfromDrl(InputStream drlStream, RoutingArguments arguments)
+            throws Exception {
+        if (drlStream == null) {
+            throw new Exception("The argument is null");
+        }
+        try (Reader reader = XNCArchiveParser.openReader(drlStream)) {
             return generateToolpathfromDrl(reader, arguments);
         }
     }
 
+    /**
+     * Generate toolpath for each drill file of a zip archive. The files are parsed in parallel, straight from
+     * the archive
+     *
+     * @param zipFile
+     * @param arguments the routing arguments
+     * @return the toolpath by the name of the drill file, in the order of the archive
+     * @throws Exception
+     */
+    public Map<String, Map<String, String>> generateToolpathfromZip(File zipFile, RoutingArguments arguments)
+            throws Exception {
+        if (zipFile == null || arguments == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        return generateToolpath(createArchiveParser(arguments).parseZip(zipFile), arguments);
+    }
+
+    /**
+     * Generate toolpath for each drill file of a zip archive read from a stream
+     *
+     * @param zipStream
+     * @param arguments the routing arguments
+     * @return the toolpath by the name of the drill file, in the order of the archive
+     * @throws Exception
+     */
+    public Map<String, Map<String, String>> generateToolpathfromZip(InputStream zipStream, RoutingArguments arguments)
+            throws Exception {
+        if (zipStream == null || arguments == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        return generateToolpath(createArchiveParser(arguments).parseZip(zipStream), arguments);
+    }
+
+    private Map<String, Map<String, String>> generateToolpath(Map<String, XNCParseResult> parseResults,
+                                                              RoutingArguments arguments) throws Exception {
+        Map<String, Map<String, String>> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, XNCParseResult> parseResult : parseResults.entrySet()) {
+            ret.put(parseResult.getKey(), generateToolpath(parseResult.getValue(), arguments));
+        }
+        return ret;
+    }
+
+    private XNCArchiveParser createArchiveParser(RoutingArguments arguments) {
+        return new XNCArchiveParser(() -> {
+            XNCParser parser = new XNCParser();
+            parser.setOffsetX(arguments.getOffsetX());
+            parser.setOffsetY(arguments.getOffsetY());
+            return parser;
+        });
+    }
+
     /**
      * Generate toolpath from dlr drl reader
      *
@@ -96,8 +201,47 @@ public class ToolPathGenerator {
         XNCParser parser = new XNCParser();
         parser.setOffsetX(arguments.getOffsetX());
         parser.setOffsetY(arguments.getOffsetY());
-        List<Token> tokens = parser.parse(drlReader);
-        return generateToolpath(tokens, arguments);
+        try (XNCTokenIterator tokens = parser.iterator(drlReader)) {
+            return generateToolpath(tokens, arguments);
+        }
+    }
+
+    /**
+     * Generate toolpath while reading the tokens. Only the tool definitions and the drill holes are kept, the
+     * other tokens are discarded as soon as they have been read. The status of a XNCTokenIterator is the one it
+     * collects while reading
+     *
+     * @param tokens
+     * @param arguments the routing arguments
+     * @return
+     * @throws Exception
+     */
+    public Map<String, String> generateToolpath(Iterator<Token> tokens, RoutingArguments arguments) throws Exception {
+        if (tokens == null || arguments == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        RN1PrinterStatusCollector collector = getCollector(tokens);
+        Map<String, List<DrillHole>> drillHoles = getDrillHoles(tokens, collector, null);
+        return generateToolpath(getStatus(tokens, collector), drillHoles, arguments);
+    }
+
+    /**
+     * Generate toolpath for tokens which have been parsed together with the status of the printer. The status
+     * replaces a second pass over the tokens and its hole counts size the list of holes of each tool
+     *
+     * @param parseResult
+     * @param arguments the routing arguments
+     * @return
+     * @throws Exception
+     */
+    public Map<String, String> generateToolpath(XNCParseResult parseResult, RoutingArguments arguments)
+            throws Exception {
+        if (parseResult == null || arguments == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        RN1PrinterStatus status = parseResult.getStatus();
+        Map<String, List<DrillHole>> drillHoles = getDrillHoles(parseResult.getTokens().iterator(), null, status);
+        return generateToolpath(status, drillHoles, arguments);
     }
 
     /**
@@ -112,38 +256,305 @@ public class ToolPathGenerator {
         if (tokens == null || arguments == null) {
             throw new Exception("Neither argument can be null");
         }
+        RN1PrinterStatusCollector collector = new RN1PrinterStatusCollector();
+        Map<String, List<DrillHole>> drillHoles = getDrillHoles(tokens.iterator(), collector, null);
+        return generateToolpath(collector.getStatus(), drillHoles, arguments);
+    }
+
+    /**
+     * Generate toolpath from a dlr file, which may be gzip compressed, into a sink
+     *
+     * @param drlFile
+     * @param arguments the routing arguments
+     * @param sink receives the toolpath of each tool
+     * @throws Exception
+     */
+    public void generateToolpathfromDrl(File drlFile, RoutingArguments arguments, ToolpathSink sink) throws Exception {
+        if (drlFile == null || arguments == null || sink == null) {
+            throw new Exception("None of the arguments can be null");
+        }
+        if (!drlFile.isFile()) {
+            throw new Exception("Cannot file DRL file at " + drlFile.getPath());
+        }
+        try (FileInputStream is = new FileInputStream(drlFile);
+             Reader reader = XNCArchiveParser.openReader(is)) {
+            generateToolpathfromDrl(reader, arguments, sink);
+        }
+    }
+
+    /**
+     * Generate toolpath from a dlr reader into a sink. The tokens are read one at a time and the toolpath of
+     * each tool is written as it is generated
+     *
+     * @param drlReader
+     * @param arguments the routing arguments
+     * @param sink receives the toolpath of each tool
+     * @throws Exception
+     */
+    public void generateToolpathfromDrl(Reader drlReader, RoutingArguments arguments, ToolpathSink sink)
+            throws Exception {
+        if (drlReader == null || arguments == null || sink == null) {
+            throw new Exception("None of the arguments can be null");
+        }
+        XNCParser parser = new XNCParser();
+        parser.setOffsetX(arguments.getOffsetX());
+        parser.setOffsetY(arguments.getOffsetY());
+        try (XNCTokenIterator tokens = parser.iterator(drlReader)) {
+            generateToolpath(tokens, arguments, sink);
+        }
+    }
+
+    /**
+     * Generate toolpath while reading the tokens into a sink. The status of a XNCTokenIterator is the one it
+     * collects while reading
+     *
+     * @param tokens
+     * @param arguments the routing arguments
+     * @param sink receives the toolpath of each tool
+     * @throws Exception
+     */
+    public void generateToolpath(Iterator<Token> tokens, RoutingArguments arguments, ToolpathSink sink)
+            throws Exception {
+        if (tokens == null || arguments == null || sink == null) {
+            throw new Exception("None of the arguments can be null");
+        }
+        RN1PrinterStatusCollector collector = getCollector(tokens);
+        Map<String, List<DrillHole>> drillHoles = getDrillHoles(tokens, collector, null);
+        generateToolpath(getStatus(tokens, collector), drillHoles, arguments, sink);
+    }
+
+    /**
+     * Generate toolpath for tokens which have been parsed together with the status of the printer into a sink
+     *
+     * @param parseResult
+     * @param arguments the routing arguments
+     * @param sink receives the toolpath of each tool
+     * @throws Exception
+     */
+    public void generateToolpath(XNCParseResult parseResult, RoutingArguments arguments, ToolpathSink sink)
+            throws Exception {
+        if (parseResult == null || arguments == null || sink == null) {
+            throw new Exception("None of the arguments can be null");
+        }
+        RN1PrinterStatus status = parseResult.getStatus();
+        Map<String, List<DrillHole>> drillHoles = getDrillHoles(parseResult.getTokens().iterator(), null, status);
+        generateToolpath(status, drillHoles, arguments, sink);
+    }
+
+    private Map<String, String> generateToolpath(RN1PrinterStatus status, Map<String, List<DrillHole>> drillHoles,
+                                                 RoutingArguments arguments) throws Exception {
         Map<String, String> ret = new LinkedHashMap<String, String>();
-        RN1PrinterStatus status = RN1PrinterStatusFactory.get().getInitialized(tokens);
+        Map<Tool, StringWriter> writers = Collections.synchronizedMap(new IdentityHashMap<>());
+        generateToolpath(status, drillHoles, arguments, tool -> writers.computeIfAbsent(tool, k -> new StringWriter()));
+        if (status.getTools() != null) {
+            for (Tool tool : status.getTools()) {
+                ret.put(tool.toString(), writers.get(tool).toString());
+            }
+        }
+        return ret;
+    }
+
+    private void generateToolpath(RN1PrinterStatus status, Map<String, List<DrillHole>> drillHoles,
+                                  RoutingArguments arguments, ToolpathSink sink) throws Exception {
         logger.debug("Initial definitions: {}", status.toString());
         if (status.getTools() != null) {
+            DrillOrder drillOrder = getDrillOrder(arguments);
+            List<ToolTask> tasks = new ArrayList<>();
             for (Tool tool : status.getTools()) {
-                RoutingPath routingPath = getRoutingPath(tool, tokens);
-                ret.put(tool.toString(), generateToolpath(routingPath, arguments));
-                logger.debug("Generated the toolpath for tool {}", tool.getId());
+                ToolTask task = new ToolTask(tool, drillHoles.getOrDefault(tool.getId(), Collections.emptyList()),
+                        drillOrder, arguments, sink);
+                pool.execute(task);
+                tasks.add(task);
+            }
+            Exception failure = null;
+            for (ToolTask task : tasks) {
+                task.quietlyJoin();
+                if (task.failure != null && failure == null) {
+                    failure = new Exception("Cannot generate the toolpath for the tool " + task.tool.getId() + ": " +
+                            task.failure.getMessage(), task.failure);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Generate the toolpath of a tool. The holes are sorted in a copy of the bucket, which is shared by the tools
+     * with the same id
+     */
+    private void generateToolpath(Tool tool, List<DrillHole> drillHoles, DrillOrder drillOrder,
+                                  RoutingArguments arguments, Writer writer) throws Exception {
+        List<DrillHole> toolDrillHoles = new ArrayList<>(drillHoles);
+        toolDrillHoles.sort(Y_ORDER);
+        RoutingPath routingPath = new RoutingPath();
+        routingPath.setTool(tool);
+        StepSplitter stepSplitter = arguments.getForStepping() > 0 ? getStepSplitter(arguments) : null;
+        if (stepSplitter != null && !toolDrillHoles.isEmpty()) {
+            List<List<DrillHole>> steps = splitDrillHoles(tool, toolDrillHoles, stepSplitter, drillOrder, arguments);
+            toolDrillHoles = new ArrayList<>(toolDrillHoles.size());
+            for (List<DrillHole> step : steps) {
+                toolDrillHoles.addAll(step);
+            }
+            routingPath.setSteps(steps);
+        } else if (drillOrder != null && toolDrillHoles.size() > 1) {
+            toolDrillHoles = orderDrillHoles(tool, toolDrillHoles, drillOrder, arguments);
+        }
+        routingPath.setDrillHoles(toolDrillHoles);
+        generateToolpath(routingPath, arguments, writer);
+        logger.debug("Generated the toolpath for tool {}", tool.getId());
+    }
+
+    private DrillOrder getDrillOrder(RoutingArguments arguments) {
+        DrillOrder ret = null;
+        if (arguments.getDrillOrder() != null) {
+            switch (arguments.getDrillOrder()) {
+                case nearestNeighbour:
+                    ret = new NearestNeighbourDrillOrder();
+                    break;
+                case optimized:
+                    ret = new OptimizedDrillOrder();
+                    break;
+                default:
+                    break;
             }
         }
         return ret;
     }
 
-    private String generateToolpath(RoutingPath routingPath, RoutingArguments arguments) throws Exception {
-        String ret = null;
+    private List<DrillHole> orderDrillHoles(Tool tool, List<DrillHole> drillHoles, DrillOrder drillOrder,
+                                            RoutingArguments arguments) throws Exception {
+        long start = System.nanoTime();
+        List<DrillHole> ret = drillOrder.order(drillHoles, start + arguments.getOrderingTime() * 1000000L);
+        long millis = (System.nanoTime() - start) / 1000000L;
+        logger.info("Ordered the {} holes of tool {} in {} ms: {}", drillHoles.size(), tool.getId(), millis,
+                getTravelChange(drillHoles, ret));
+        return ret;
+    }
+
+    private StepSplitter getStepSplitter(RoutingArguments arguments) {
+        StepSplitter ret = null;
+        if (arguments.getStepSplit() != null) {
+            switch (arguments.getStepSplit()) {
+                case grid:
+                    ret = new GridStepSplitter();
+                    break;
+                case kMeans:
+                    ret = new KMeansStepSplitter();
+                    break;
+                default:
+                    break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Split the holes into steps of holes close to each other. The steps are drilled in the order of their
+     * centres which cuts the travel between them, and the holes of each step are ordered from the last hole of
+     * the previous step
+     */
+    private List<List<DrillHole>> splitDrillHoles(Tool tool, List<DrillHole> drillHoles, StepSplitter stepSplitter,
+                                                  DrillOrder drillOrder, RoutingArguments arguments) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + arguments.getOrderingTime() * 1000000L;
+        List<List<DrillHole>> steps = stepSplitter.split(drillHoles, arguments.getForStepping());
+        List<DrillHole> centres = new ArrayList<>(steps.size());
+        Map<DrillHole, List<DrillHole>> stepsByCentre = new IdentityHashMap<>();
+        for (List<DrillHole> step : steps) {
+            float x = 0, y = 0;
+            for (DrillHole drillHole : step) {
+                x += drillHole.getX();
+                y += drillHole.getY();
+            }
+            DrillHole centre = new DrillHole(x / step.size(), y / step.size());
+            centres.add(centre);
+            stepsByCentre.put(centre, step);
+        }
+        List<List<DrillHole>> ret = new ArrayList<>(steps.size());
+        List<DrillHole> ordered = new ArrayList<>(drillHoles.size());
+        float x = 0, y = 0;
+        for (DrillHole centre : new OptimizedDrillOrder().order(centres, deadline)) {
+            List<DrillHole> step = stepsByCentre.get(centre);
+            if (drillOrder != null && step.size() > 1) {
+                step = drillOrder.order(step, x, y, deadline);
+            }
+            ret.add(step);
+            ordered.addAll(step);
+            x = step.get(step.size() - 1).getX();
+            y = step.get(step.size() - 1).getY();
+        }
+        long millis = (System.nanoTime() - start) / 1000000L;
+        logger.info("Split the {} holes of tool {} into {} steps in {} ms: {}", drillHoles.size(), tool.getId(),
+                ret.size(), millis, getTravelChange(drillHoles, ordered));
+        return ret;
+    }
+
+    private static String getTravelChange(List<DrillHole> before, List<DrillHole> after) {
+        double travelBefore = DrillOrder.getTravel(before);
+        double travelAfter = DrillOrder.getTravel(after);
+        double gain = travelBefore > 0 ? 100 * (travelBefore - travelAfter) / travelBefore : 0;
+        return String.format("the travel went from %.3f to %.3f (%.1f%% shorter)", travelBefore, travelAfter, gain);
+    }
+
+    private void generateToolpath(RoutingPath routingPath, RoutingArguments arguments, Writer writer) throws Exception {
         if (arguments.getForStepping() > 0) {
-            ret = generateToolpathSteps(routingPath, arguments);
+            generateToolpathSteps(routingPath, arguments, writer);
         } else {
-            ret = generateToolpathFull(routingPath, arguments);
+            generateToolpathFull(routingPath, arguments, new LineEndingWriter(writer, arguments.getLineEnding()));
         }
-        return ret;
     }
 
-    private String generateToolpathSteps(RoutingPath routingPath, RoutingArguments arguments) throws Exception {
-        MoveAndDrill generator = new MoveAndDrill();
+    private void generateToolpathSteps(RoutingPath routingPath, RoutingArguments arguments, Writer writer)
+            throws Exception {
+        MoveAndDrillSession session = arguments.isStepSession() ? new MoveAndDrillSession() : null;
+        ComplexCommandFormat generator = session != null ? session : new MoveAndDrill();
         ComplexArgument complexArgument = makeComplexArgument(arguments);
-        StringWriter sw = new StringWriter();
+        List<List<DrillHole>> steps = getSteps(routingPath, arguments);
+        if (arguments.isWriteExtremes()) {
+            addExtremes(routingPath, arguments, complexArgument);
+            writeStep(generator, complexArgument, steps.isEmpty() ? session : null, writer);
+        }
+        for (int i = 0; i < steps.size(); i++) {
+            for (DrillHole drillHole : steps.get(i)) {
+                complexArgument.getPoints().add(createVertex(drillHole, arguments));
+            }
+            writeStep(generator, complexArgument, i == steps.size() - 1 ? session : null, writer);
+        }
+    }
+
+    private List<List<DrillHole>> getSteps(RoutingPath routingPath, RoutingArguments arguments) {
+        List<List<DrillHole>> ret = routingPath.getSteps();
+        if (ret == null) {
+            ret = new ArrayList<>();
+            List<DrillHole> drillHoles = routingPath.getDrillHoles();
+            if (drillHoles != null) {
+                for (int from = 0; from < drillHoles.size(); from += arguments.getForStepping()) {
+                    ret.add(drillHoles.subList(from, Math.min(drillHoles.size(), from + arguments.getForStepping())));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Write a step on a line of its own. The session, if not null, ends with the step
+     */
+    private void writeStep(ComplexCommandFormat generator, ComplexArgument complexArgument, MoveAndDrillSession session,
+                           Writer writer) throws Exception {
+        generator.generateCommand(complexArgument, writer);
+        if (session != null) {
+            session.end(complexArgument.isReset(), writer);
+        }
+        writer.write("\r\n");
+        complexArgument.getPoints().clear();
+    }
+
+    private void addExtremes(RoutingPath routingPath, RoutingArguments arguments, ComplexArgument complexArgument) {
         float maxX = 0, maxY = 0, maxZ = 0;
         if (routingPath.getDrillHoles() != null) {
-            int nr = 0;
             for (DrillHole drillHole : routingPath.getDrillHoles()) {
-                nr++;
                 VertexArgument vertexArgument = createVertex(drillHole, arguments);
                 if (vertexArgument.getX() > maxX) {
                     maxX = vertexArgument.getX();
@@ -154,42 +565,23 @@ public class ToolPathGenerator {
                 if (vertexArgument.getZ() < maxZ) {
                     maxZ = vertexArgument.getZ();
                 }
-                complexArgument.getPoints().add(vertexArgument);
-                if (nr == arguments.getForStepping()) {
-                    sw.write(generator.generateCommand(complexArgument));
-                    sw.write("\r\n");
-                    complexArgument.getPoints().clear();
-                    nr = 0;
-                }
-            }
-            if (nr > 0) {
-                sw.write(generator.generateCommand(complexArgument));
-                sw.write("\r\n");
-                complexArgument.getPoints().clear();
             }
         }
-        String ret = sw.toString();
-        if (arguments.isWriteExtremes()) {
-            complexArgument.getPoints().clear();
-            VertexArgument vertexArgument = new VertexArgument();
-            vertexArgument.setX(0f);
-            vertexArgument.setY(0f);
-            vertexArgument.setZ(maxZ);
-            complexArgument.getPoints().add(vertexArgument);
-            vertexArgument = new VertexArgument();
-            vertexArgument.setX(maxX);
-            vertexArgument.setY(maxY);
-            vertexArgument.setZ(maxZ);
-            complexArgument.getPoints().add(vertexArgument);
-            String header = generator.generateCommand(complexArgument);
-            ret = header + "\r\n" + ret;
-        }
-        return ret;
+        VertexArgument vertexArgument = new VertexArgument();
+        vertexArgument.setX(0f);
+        vertexArgument.setY(0f);
+        vertexArgument.setZ(maxZ);
+        complexArgument.getPoints().add(vertexArgument);
+        vertexArgument = new VertexArgument();
+        vertexArgument.setX(maxX);
+        vertexArgument.setY(maxY);
+        vertexArgument.setZ(maxZ);
+        complexArgument.getPoints().add(vertexArgument);
     }
 
-    private String generateToolpathFull(RoutingPath routingPath, RoutingArguments arguments) throws Exception {
+    private void generateToolpathFull(RoutingPath routingPath, RoutingArguments arguments, Writer writer)
+            throws Exception {
         MoveAndDrill generator = new MoveAndDrill();
-        String ret = null;
         ComplexArgument complexArgument = makeComplexArgument(arguments);
         complexArgument.setReset(true);
 
@@ -199,9 +591,7 @@ public class ToolPathGenerator {
                 complexArgument.getPoints().add(vertexArgument);
             }
         }
-        ret = generator.generateCommand(complexArgument);
-        ret = ret.replaceAll("\\x3b", "\n");
-        return ret;
+        generator.generateCommand(complexArgument, writer);
     }
 
     private VertexArgument createVertex(DrillHole drillHole, RoutingArguments arguments) {
@@ -223,47 +613,102 @@ public class ToolPathGenerator {
         return complexArgument;
     }
 
-    private RoutingPath getRoutingPath(Tool tool, List<Token> tokens) throws Exception {
-        RoutingPath ret = new RoutingPath();
-        ret.setTool(tool);
-        ret.setDrillHoles(getDrillHoles(tool, tokens));
-        return ret;
+    /**
+     * Get a collector for the status of the tokens, unless they come from a XNCTokenIterator, which collects it
+     * already
+     *
+     * @param tokens
+     * @return the collector or null
+     */
+    private static RN1PrinterStatusCollector getCollector(Iterator<Token> tokens) {
+        return tokens instanceof XNCTokenIterator ? null : new RN1PrinterStatusCollector();
+    }
+
+    private static RN1PrinterStatus getStatus(Iterator<Token> tokens, RN1PrinterStatusCollector collector) {
+        return collector == null ? ((XNCTokenIterator) tokens).getStatus() : collector.getStatus();
     }
 
-    private List<DrillHole> getDrillHoles(Tool tool, List<Token> tokens) throws Exception {
-        List<DrillHole> ret = new ArrayList<>();
-        boolean take = false;
-        for (Token token : tokens) {
+    /**
+     * Distribute the holes into a list for each tool in a single pass. A hole belongs to the tool selected last,
+     * as XNCSelectionHandler tracks it
+     *
+     * @param tokens
+     * @param collector collects the status from the same pass, if not null
+     * @param counts sizes the lists with the number of holes of each tool, if not null
+     * @return the holes by the id of the tool
+     * @throws Exception
+     */
+    private Map<String, List<DrillHole>> getDrillHoles(Iterator<Token> tokens, RN1PrinterStatusCollector collector,
+                                                       RN1PrinterStatus counts) throws Exception {
+        HoleCollector holeCollector = new HoleCollector(counts);
+        while (tokens.hasNext()) {
+            Token token = tokens.next();
+            if (collector != null) {
+                collector.accept(token);
+            }
             if (token instanceof DrillHole) {
-                DrillHole drillHole = (DrillHole) token;
-                if (take) {
-                    ret.add(drillHole);
-                }
-            } else if (token instanceof SelectTool) {
-                SelectTool t = (SelectTool) token;
-                if (t.getId().equals(tool.getId())) {
-                    take = true;
-                } else {
-                    take = false;
-                }
+                holeCollector.add((DrillHole) token);
             } else {
-                take = false;
+                XNCTokenListHandler.replay(token, holeCollector);
             }
         }
+        return holeCollector.drillHoles;
+    }
 
-        ret.sort(new Comparator<DrillHole>() {
-            @Override
-            public int compare(DrillHole o1, DrillHole o2) {
-                int ret = 0;
-                if (o1.getY() > o2.getY()) {
-                    ret = 1;
-                } else {
-                    ret = -1;
-                }
-                return ret;
+    /**
+     * Collects the holes of each tool. The holes which are tokens already are added as they are
+     */
+    private static class HoleCollector extends XNCSelectionHandler<List<DrillHole>> {
+        private final Map<String, List<DrillHole>> drillHoles = new HashMap<>();
+        private final RN1PrinterStatus counts;
+
+        HoleCollector(RN1PrinterStatus counts) {
+            this.counts = counts;
+        }
+
+        @Override
+        protected List<DrillHole> resolve(String id) {
+            return drillHoles.computeIfAbsent(id,
+                    k -> counts == null ? new ArrayList<>() : new ArrayList<>(counts.getHoleCount(k)));
+        }
+
+        @Override
+        public void onDrill(float x, float y) {
+            add(new DrillHole(x, y));
+        }
+
+        void add(DrillHole drillHole) {
+            List<DrillHole> selected = getSelected();
+            if (selected != null) {
+                selected.add(drillHole);
             }
-        });
+        }
+    }
 
-        return ret;
+    private class ToolTask extends RecursiveAction {
+        private final Tool tool;
+        private final List<DrillHole> drillHoles;
+        private final DrillOrder drillOrder;
+        private final RoutingArguments arguments;
+        private final ToolpathSink sink;
+        private Exception failure;
+
+        ToolTask(Tool tool, List<DrillHole> drillHoles, DrillOrder drillOrder, RoutingArguments arguments,
+                 ToolpathSink sink) {
+            this.tool = tool;
+            this.drillHoles = drillHoles;
+            this.drillOrder = drillOrder;
+            this.arguments = arguments;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            try (Writer writer = sink.open(tool)) {
+                generateToolpath(tool, drillHoles, drillOrder, arguments, writer);
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
     }
 }
@@ -0,0 +1,79 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath;
+
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receives the toolpath of each tool as it is generated. The toolpath of the tools are generated in parallel,
+ * so a sink is opened from the threads of the pool of the generator and it must be safe to do so
+ *
+ * @author Petre Maierean
+ */
+public interface ToolpathSink {
+    /**
+     * Open the writer for the toolpath of a tool. The generator closes it once the toolpath is written
+     *
+     * @param tool
+     * @return
+     * @throws Exception
+     */
+    Writer open(Tool tool) throws Exception;
+
+    /**
+     * Get a sink that writes the toolpath of each tool to an output stream, encoded in ASCII
+     *
+     * @param streams opens the stream of a tool
+     * @return
+     */
+    static ToolpathSink toStreams(StreamOpener streams) {
+        return tool -> {
+            OutputStream os = streams.open(tool);
+            return new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.US_ASCII), 1 << 16);
+        };
+    }
+
+    /**
+     * Get a sink that writes the toolpath of each tool to a channel, encoded in ASCII
+     *
+     * @param channels opens the channel of a tool
+     * @return
+     */
+    static ToolpathSink toChannels(ChannelOpener channels) {
+        return tool -> {
+            WritableByteChannel channel = channels.open(tool);
+            return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.US_ASCII), 1 << 16);
+        };
+    }
+
+    interface StreamOpener {
+        OutputStream open(Tool tool) throws Exception;
+    }
+
+    interface ChannelOpener {
+        WritableByteChannel open(Tool tool) throws Exception;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.bo;
+
+/**
+ * The strategies for ordering the holes of a tool
+ *
+ * @author Petre Maierean
+ */
+public enum DrillOrderStrategy {
+    /**
+     * The holes are drilled by their Y coordinate
+     */
+    yOrder,
+    /**
+     * The next hole is the nearest one that has not been drilled yet
+     */
+    nearestNeighbour,
+    /**
+     * The nearest neighbour order is improved with 2-opt and Or-opt moves for as long as the time budget allows
+     */
+    optimized
+}
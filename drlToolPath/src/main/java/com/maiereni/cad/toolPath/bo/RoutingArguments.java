@@ -27,6 +27,11 @@ public class RoutingArguments {
     private Float speedZ;
     private int forStepping;
     private boolean writeExtremes;
+    private DrillOrderStrategy drillOrder = DrillOrderStrategy.yOrder;
+    private long orderingTime = 1000;
+    private String lineEnding = "\n";
+    private StepSplitStrategy stepSplit = StepSplitStrategy.count;
+    private boolean stepSession = true;
 
     /**
      * Get the Z0 position
@@ -95,7 +100,8 @@ public class RoutingArguments {
 
     /**
      * Get the maximum number of steps to write in one drilling instruction. If 0 or less is passed than the
-     * output contains one drilling instruction per line
+     * output contains one drilling instruction per line. How the holes are split into steps depends on the
+     * step split strategy
      *
      * @return
      */
@@ -122,4 +128,77 @@ public class RoutingArguments {
     public void setWriteExtremes(boolean writeExtremes) {
         this.writeExtremes = writeExtremes;
     }
+
+    /**
+     * Get the strategy for ordering the holes of each tool
+     *
+     * @return
+     */
+    public DrillOrderStrategy getDrillOrder() {
+        return drillOrder;
+    }
+
+    public void setDrillOrder(DrillOrderStrategy drillOrder) {
+        this.drillOrder = drillOrder;
+    }
+
+    /**
+     * Get the time budget, in milliseconds, for ordering the holes of one tool. When it runs out the best order
+     * found so far is used
+     *
+     * @return
+     */
+    public long getOrderingTime() {
+        return orderingTime;
+    }
+
+    public void setOrderingTime(long orderingTime) {
+        this.orderingTime = orderingTime;
+    }
+
+    /**
+     * Get the line ending written in place of the separators of the commands and of the line breaks, when the
+     * toolpath is not stepped
+     *
+     * @return
+     */
+    public String getLineEnding() {
+        return lineEnding;
+    }
+
+    public void setLineEnding(String lineEnding) {
+        this.lineEnding = lineEnding;
+    }
+
+    /**
+     * Get the strategy for splitting the holes of each tool into steps. The count strategy makes the fewest
+     * steps, full but spread over the board. The grid and kMeans strategies keep the holes of a step close to
+     * each other, at the cost of more steps: their parts are packed up to the maximum, but a step rarely gets
+     * full, so expect about 1.3 times as many steps as with count, and up to 1.6 times when a step holds a large
+     * share of the holes
+     *
+     * @return
+     */
+    public StepSplitStrategy getStepSplit() {
+        return stepSplit;
+    }
+
+    public void setStepSplit(StepSplitStrategy stepSplit) {
+        this.stepSplit = stepSplit;
+    }
+
+    /**
+     * Check if the steps of a tool are drilled in one session, where the machine is initialized by the first
+     * step and its motor is stopped after the last one. Otherwise every step initializes the machine and stops
+     * the motor, as the stepped toolpath did before the sessions. The sessions are on by default
+     *
+     * @return
+     */
+    public boolean isStepSession() {
+        return stepSession;
+    }
+
+    public void setStepSession(boolean stepSession) {
+        this.stepSession = stepSession;
+    }
 }
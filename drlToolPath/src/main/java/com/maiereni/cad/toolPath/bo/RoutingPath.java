@@ -28,6 +28,7 @@ import java.util.List;
 public class RoutingPath {
     private Tool tool;
     private List<DrillHole> drillHoles;
+    private List<List<DrillHole>> steps;
 
     public Tool getTool() {
         return tool;
@@ -44,4 +45,17 @@ public class RoutingPath {
     public void setDrillHoles(List<DrillHole> drillHoles) {
         this.drillHoles = drillHoles;
     }
+
+    /**
+     * Get the holes of each step, if they have been split other than by count
+     *
+     * @return
+     */
+    public List<List<DrillHole>> getSteps() {
+        return steps;
+    }
+
+    public void setSteps(List<List<DrillHole>> steps) {
+        this.steps = steps;
+    }
 }
@@ -0,0 +1,40 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.bo;
+
+/**
+ * The strategies for splitting the holes of a tool into steps, when stepping
+ *
+ * @author Petre Maierean
+ */
+public enum StepSplitStrategy {
+    /**
+     * The holes are taken in their drill order, up to the maximum number of a step
+     */
+    count,
+    /**
+     * The holes are split in the cells of a grid, and the cells with too many holes are split in four. The
+     * cells next to each other are packed in a step while they fit
+     */
+    grid,
+    /**
+     * The holes are split in two clusters with k-means, and the clusters with too many holes are split again.
+     * The clusters next to each other are packed in a step while they fit
+     */
+    kMeans
+}
@@ -0,0 +1,157 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Splits the holes again and again until every part fits in a step. A part that cannot be split in space, because
+ * its holes are on top of each other or because the split makes no progress, is cut at the middle of its
+ * longer side or, at last, by count. The parts that follow each other are then packed in steps, as long as they
+ * fit, so that the small parts left over by the splits do not make steps of their own
+ *
+ * @author Petre Maierean
+ */
+public abstract class AbstractStepSplitter implements StepSplitter {
+
+    @Override
+    public List<List<DrillHole>> split(List<DrillHole> drillHoles, int maxHoles) throws Exception {
+        if (drillHoles == null) {
+            throw new Exception("The argument is null");
+        }
+        if (maxHoles <= 0) {
+            throw new Exception("The maximum number of holes in a step must be positive");
+        }
+        int n = drillHoles.size();
+        float[] x = new float[n];
+        float[] y = new float[n];
+        int[] points = new int[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = drillHoles.get(i).getX();
+            y[i] = drillHoles.get(i).getY();
+            points[i] = i;
+        }
+        List<int[]> parts = new ArrayList<>();
+        split(points, 0, n, x, y, maxHoles, parts);
+        List<List<DrillHole>> ret = new ArrayList<>(parts.size());
+        for (int[] part : parts) {
+            Arrays.sort(points, part[0], part[1]);
+            List<DrillHole> step = new ArrayList<>(part[1] - part[0]);
+            for (int i = part[0]; i < part[1]; i++) {
+                step.add(drillHoles.get(points[i]));
+            }
+            ret.add(step);
+        }
+        return ret;
+    }
+
+    /**
+     * Rearrange a range of points into parts
+     *
+     * @param points the indexes of the points
+     * @param from
+     * @param to
+     * @param x
+     * @param y
+     * @param bounds the smallest X and Y followed by the largest X and Y of the range
+     * @return the bounds of the parts, from the start of the range to its end
+     */
+    protected abstract int[] partition(int[] points, int from, int to, float[] x, float[] y, float[] bounds);
+
+    private void split(int[] points, int from, int to, float[] x, float[] y, int maxHoles, List<int[]> parts) {
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{from, to});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int start = range[0], end = range[1];
+            if (end - start <= maxHoles) {
+                if (end > start) {
+                    parts.add(range);
+                }
+                continue;
+            }
+            float[] bounds = getBounds(points, start, end, x, y);
+            int[] ends;
+            if (bounds[2] == bounds[0] && bounds[3] == bounds[1]) {
+                ends = new int[]{start, start + (end - start) / 2, end};
+            } else {
+                ends = partition(points, start, end, x, y, bounds);
+                for (int i = 1; i < ends.length; i++) {
+                    if (ends[i] - ends[i - 1] == end - start) {
+                        ends = splitInHalf(points, start, end, bounds[2] - bounds[0] >= bounds[3] - bounds[1] ? x : y);
+                        break;
+                    }
+                }
+            }
+            for (int i = ends.length - 1; i > 0; i--) {
+                ranges.push(new int[]{ends[i - 1], ends[i]});
+            }
+        }
+        pack(parts, maxHoles);
+    }
+
+    /**
+     * Merge the parts that follow each other while they fit in a step. The parts come in the order of the
+     * splits, so the merged parts are next to each other
+     */
+    private static void pack(List<int[]> parts, int maxHoles) {
+        List<int[]> packed = new ArrayList<>(parts.size());
+        int[] last = null;
+        for (int[] part : parts) {
+            if (last != null && last[1] == part[0] && part[1] - last[0] <= maxHoles) {
+                last[1] = part[1];
+            } else {
+                last = new int[]{part[0], part[1]};
+                packed.add(last);
+            }
+        }
+        parts.clear();
+        parts.addAll(packed);
+    }
+
+    private static int[] splitInHalf(int[] points, int from, int to, float[] coordinates) {
+        Integer[] sorted = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            sorted[i - from] = points[i];
+        }
+        Arrays.sort(sorted, Comparator.comparingDouble(i -> coordinates[i]));
+        for (int i = from; i < to; i++) {
+            points[i] = sorted[i - from];
+        }
+        return new int[]{from, from + (to - from) / 2, to};
+    }
+
+    private static float[] getBounds(int[] points, int from, int to, float[] x, float[] y) {
+        float[] ret = {Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int i = from; i < to; i++) {
+            int p = points[i];
+            ret[0] = Math.min(ret[0], x[p]);
+            ret[1] = Math.min(ret[1], y[p]);
+            ret[2] = Math.max(ret[2], x[p]);
+            ret[3] = Math.max(ret[3], y[p]);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+
+import java.util.List;
+
+/**
+ * Decides the order in which the holes of a tool are drilled. The spindle starts from a given position, which is
+ * the origin unless said otherwise, and the aim is to cut the distance it travels between the holes
+ *
+ * @author Petre Maierean
+ */
+public interface DrillOrder {
+    /**
+     * Order the holes, starting from the origin
+     *
+     * @param drillHoles
+     * @param deadline the value of System.nanoTime after which the ordering should stop improving the result
+     * @return a new list with the same holes
+     * @throws Exception
+     */
+    default List<DrillHole> order(List<DrillHole> drillHoles, long deadline) throws Exception {
+        return order(drillHoles, 0, 0, deadline);
+    }
+
+    /**
+     * Order the holes, starting from a given position
+     *
+     * @param drillHoles
+     * @param startX
+     * @param startY
+     * @param deadline the value of System.nanoTime after which the ordering should stop improving the result
+     * @return a new list with the same holes
+     * @throws Exception
+     */
+    List<DrillHole> order(List<DrillHole> drillHoles, float startX, float startY, long deadline) throws Exception;
+
+    /**
+     * Get the distance travelled from the origin through the holes, in the given order
+     *
+     * @param drillHoles
+     * @return
+     */
+    static double getTravel(List<DrillHole> drillHoles) {
+        return getTravel(drillHoles, 0, 0);
+    }
+
+    /**
+     * Get the distance travelled from a given position through the holes, in the given order
+     *
+     * @param drillHoles
+     * @param startX
+     * @param startY
+     * @return
+     */
+    static double getTravel(List<DrillHole> drillHoles, float startX, float startY) {
+        double ret = 0;
+        float x = startX, y = startY;
+        for (DrillHole drillHole : drillHoles) {
+            ret += distance(x, y, drillHole.getX(), drillHole.getY());
+            x = drillHole.getX();
+            y = drillHole.getY();
+        }
+        return ret;
+    }
+
+    /**
+     * Get the distance between two points
+     *
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     * @return
+     */
+    static double distance(float x1, float y1, float x2, float y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+/**
+ * Splits the holes in the four quarters of the rectangle around them, until every quarter fits in a step. The
+ * steps are the cells of a grid which is finer where the holes are denser
+ *
+ * @author Petre Maierean
+ */
+public class GridStepSplitter extends AbstractStepSplitter {
+
+    @Override
+    protected int[] partition(int[] points, int from, int to, float[] x, float[] y, float[] bounds) {
+        float midX = (bounds[0] + bounds[2]) / 2;
+        float midY = (bounds[1] + bounds[3]) / 2;
+        int[] ret = new int[5];
+        int[] quarters = new int[to - from];
+        for (int i = from; i < to; i++) {
+            int p = points[i];
+            int quarter = (x[p] < midX ? 0 : 1) + (y[p] < midY ? 0 : 2);
+            quarters[i - from] = quarter;
+            ret[quarter + 1]++;
+        }
+        ret[0] = from;
+        for (int q = 1; q < ret.length; q++) {
+            ret[q] += ret[q - 1];
+        }
+        int[] next = {ret[0], ret[1], ret[2], ret[3]};
+        int[] copy = new int[to - from];
+        System.arraycopy(points, from, copy, 0, to - from);
+        for (int i = 0; i < copy.length; i++) {
+            points[next[quarters[i]]++] = copy[i];
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+/**
+ * A uniform grid over a set of points, with about two points in a cell or smaller cells if the points are
+ * clustered. A search for the nearest points looks at the cells in rings around the cell of the query and
+ * stops as soon as the next ring cannot hold anything closer. Points can be removed from the searches for the
+ * nearest remaining point, while the searches for the nearest neighbours of a point always see the full set
+ *
+ * @author Petre Maierean
+ */
+class HoleGrid {
+    private static final int MAX_CELL_SIZE = 32;
+    private final float[] x, y;
+    private final float minX, minY;
+    private final double cellSize;
+    private final int columns, rows;
+    private final int[] cellStart, cellEnd, items, where;
+    private int remaining;
+
+    /**
+     * Build the grid over the first points of the arrays
+     *
+     * @param x
+     * @param y
+     * @param count the number of points
+     */
+    HoleGrid(float[] x, float[] y, int count) {
+        this.x = x;
+        this.y = y;
+        float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            x0 = Math.min(x0, x[i]);
+            y0 = Math.min(y0, y[i]);
+            x1 = Math.max(x1, x[i]);
+            y1 = Math.max(y1, y[i]);
+        }
+        if (count == 0) {
+            x0 = y0 = x1 = y1 = 0;
+        }
+        minX = x0;
+        minY = y0;
+        double width = (double) x1 - x0, height = (double) y1 - y0;
+        int cells = Math.max(1, count / 2);
+        double maxCells = 4d * count + 16;
+        double size = Math.sqrt(width * height / cells);
+        if (!(size > 0)) {
+            size = Math.max(width, height) / cells;
+        }
+        if (!(size > 0)) {
+            size = 1;
+        }
+        while ((width / size + 1) * (height / size + 1) > maxCells) {
+            size *= 2;
+        }
+        // clustered holes crowd a few cells, which are split for as long as the number of cells allows
+        int[] counts = count(size, width, height, count);
+        while (getMax(counts) > MAX_CELL_SIZE && (2 * width / size + 1) * (2 * height / size + 1) <= maxCells) {
+            size /= 2;
+            counts = count(size, width, height, count);
+        }
+        cellSize = size;
+        columns = (int) (width / size) + 1;
+        rows = (int) (height / size) + 1;
+        cellStart = counts;
+        cellEnd = new int[columns * rows];
+        items = new int[count];
+        where = new int[count];
+        for (int c = 0; c < cellEnd.length; c++) {
+            cellStart[c + 1] += cellStart[c];
+            cellEnd[c] = cellStart[c];
+        }
+        for (int i = 0; i < count; i++) {
+            int c = getCell(x[i], y[i]);
+            where[i] = cellEnd[c];
+            items[cellEnd[c]++] = i;
+        }
+        remaining = count;
+    }
+
+    /**
+     * Take a point out of the searches for the nearest remaining point
+     *
+     * @param point
+     */
+    void remove(int point) {
+        int c = getCell(x[point], y[point]);
+        int last = --cellEnd[c];
+        int at = where[point];
+        int other = items[last];
+        items[at] = other;
+        where[other] = at;
+        items[last] = point;
+        where[point] = last;
+        remaining--;
+    }
+
+    /**
+     * Get the number of points which have not been removed
+     *
+     * @return
+     */
+    int getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Find the remaining point that is nearest to a position
+     *
+     * @param px
+     * @param py
+     * @return the point or -1 if there is none left
+     */
+    int findNearestRemaining(float px, float py) {
+        int ret = -1;
+        if (remaining > 0) {
+            double best = Double.MAX_VALUE;
+            int cx = getColumn(px), cy = getRow(py);
+            int maxRing = Math.max(columns, rows);
+            for (int r = 0; r <= maxRing; r++) {
+                for (int row = cy - r; row <= cy + r; row++) {
+                    if (row < 0 || row >= rows) {
+                        continue;
+                    }
+                    int step = (row == cy - r || row == cy + r) ? 1 : Math.max(1, 2 * r);
+                    for (int column = cx - r; column <= cx + r; column += step) {
+                        if (column < 0 || column >= columns) {
+                            continue;
+                        }
+                        int c = row * columns + column;
+                        for (int k = cellStart[c]; k < cellEnd[c]; k++) {
+                            int point = items[k];
+                            double d = getDistance2(px, py, point);
+                            if (d < best) {
+                                best = d;
+                                ret = point;
+                            }
+                        }
+                    }
+                }
+                double reach = r * cellSize;
+                if (ret >= 0 && best <= reach * reach) {
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Find the points nearest to a position, whether removed or not
+     *
+     * @param px
+     * @param py
+     * @param exclude a point to leave out or -1
+     * @param neighbours receives the points, nearest first
+     * @return the number of points found, up to the length of the neighbours
+     */
+    int findNearest(float px, float py, int exclude, int[] neighbours) {
+        int ret = 0;
+        int k = neighbours.length;
+        double[] distances = new double[k];
+        int cx = getColumn(px), cy = getRow(py);
+        int maxRing = Math.max(columns, rows);
+        for (int r = 0; r <= maxRing; r++) {
+            for (int row = cy - r; row <= cy + r; row++) {
+                if (row < 0 || row >= rows) {
+                    continue;
+                }
+                int step = (row == cy - r || row == cy + r) ? 1 : Math.max(1, 2 * r);
+                for (int column = cx - r; column <= cx + r; column += step) {
+                    if (column < 0 || column >= columns) {
+                        continue;
+                    }
+                    int c = row * columns + column;
+                    for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                        int point = items[i];
+                        if (point == exclude) {
+                            continue;
+                        }
+                        double d = getDistance2(px, py, point);
+                        if (ret < k || d < distances[ret - 1]) {
+                            int at = ret < k ? ret++ : k - 1;
+                            while (at > 0 && distances[at - 1] > d) {
+                                distances[at] = distances[at - 1];
+                                neighbours[at] = neighbours[at - 1];
+                                at--;
+                            }
+                            distances[at] = d;
+                            neighbours[at] = point;
+                        }
+                    }
+                }
+            }
+            double reach = r * cellSize;
+            if (ret == k && distances[k - 1] <= reach * reach) {
+                break;
+            }
+        }
+        return ret;
+    }
+
+    private int[] count(double size, double width, double height, int count) {
+        int c = (int) (width / size) + 1;
+        int r = (int) (height / size) + 1;
+        int[] ret = new int[c * r + 1];
+        for (int i = 0; i < count; i++) {
+            int column = Math.max(0, Math.min(c - 1, (int) ((x[i] - minX) / size)));
+            int row = Math.max(0, Math.min(r - 1, (int) ((y[i] - minY) / size)));
+            ret[row * c + column + 1]++;
+        }
+        return ret;
+    }
+
+    private static int getMax(int[] counts) {
+        int ret = 0;
+        for (int count : counts) {
+            ret = Math.max(ret, count);
+        }
+        return ret;
+    }
+
+    private double getDistance2(float px, float py, int point) {
+        double dx = x[point] - px;
+        double dy = y[point] - py;
+        return dx * dx + dy * dy;
+    }
+
+    private int getCell(float px, float py) {
+        return getRow(py) * columns + getColumn(px);
+    }
+
+    private int getColumn(float px) {
+        int ret = (int) ((px - minX) / cellSize);
+        return Math.max(0, Math.min(columns - 1, ret));
+    }
+
+    private int getRow(float py) {
+        int ret = (int) ((py - minY) / cellSize);
+        return Math.max(0, Math.min(rows - 1, ret));
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+/**
+ * Splits the holes in two clusters with a few rounds of k-means, starting from the holes at the ends of the
+ * longer side of the rectangle around them, until every cluster fits in a step
+ *
+ * @author Petre Maierean
+ */
+public class KMeansStepSplitter extends AbstractStepSplitter {
+    private static final int MAX_ROUNDS = 8;
+
+    @Override
+    protected int[] partition(int[] points, int from, int to, float[] x, float[] y, float[] bounds) {
+        boolean wide = bounds[2] - bounds[0] >= bounds[3] - bounds[1];
+        double x0, y0, x1, y1;
+        if (wide) {
+            x0 = bounds[0];
+            x1 = bounds[2];
+            y0 = y1 = (bounds[1] + bounds[3]) / 2d;
+        } else {
+            y0 = bounds[1];
+            y1 = bounds[3];
+            x0 = x1 = (bounds[0] + bounds[2]) / 2d;
+        }
+        boolean[] second = new boolean[to - from];
+        boolean changed = true;
+        for (int round = 0; round < MAX_ROUNDS && changed; round++) {
+            changed = false;
+            double sx0 = 0, sy0 = 0, sx1 = 0, sy1 = 0;
+            int n0 = 0, n1 = 0;
+            for (int i = from; i < to; i++) {
+                int p = points[i];
+                double d0 = (x[p] - x0) * (x[p] - x0) + (y[p] - y0) * (y[p] - y0);
+                double d1 = (x[p] - x1) * (x[p] - x1) + (y[p] - y1) * (y[p] - y1);
+                boolean s = d1 < d0;
+                if (s != second[i - from] || round == 0) {
+                    changed = true;
+                    second[i - from] = s;
+                }
+                if (s) {
+                    sx1 += x[p];
+                    sy1 += y[p];
+                    n1++;
+                } else {
+                    sx0 += x[p];
+                    sy0 += y[p];
+                    n0++;
+                }
+            }
+            if (n0 == 0 || n1 == 0) {
+                break;
+            }
+            x0 = sx0 / n0;
+            y0 = sy0 / n0;
+            x1 = sx1 / n1;
+            y1 = sy1 / n1;
+        }
+        int[] copy = new int[to - from];
+        System.arraycopy(points, from, copy, 0, to - from);
+        int first = from, last = to;
+        for (int i = 0; i < copy.length; i++) {
+            if (second[i]) {
+                points[--last] = copy[i];
+            } else {
+                points[first++] = copy[i];
+            }
+        }
+        return new int[]{from, first, to};
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drills the nearest hole that has not been drilled yet, starting from the given position. The holes are
+ * looked up in a spatial grid, so the order is built in about linear time. If the deadline passes before the
+ * order is complete, the holes left are drilled in the order they were given
+ *
+ * @author Petre Maierean
+ */
+public class NearestNeighbourDrillOrder implements DrillOrder {
+
+    @Override
+    public List<DrillHole> order(List<DrillHole> drillHoles, float startX, float startY, long deadline)
+            throws Exception {
+        if (drillHoles == null) {
+            throw new Exception("The argument is null");
+        }
+        List<DrillHole> ret = new ArrayList<>(drillHoles);
+        int n = drillHoles.size();
+        if (n > 1) {
+            float[] x = new float[n + 1];
+            float[] y = new float[n + 1];
+            for (int i = 0; i < n; i++) {
+                DrillHole drillHole = drillHoles.get(i);
+                x[i] = drillHole.getX();
+                y[i] = drillHole.getY();
+            }
+            x[n] = startX;
+            y[n] = startY;
+            HoleGrid grid = new HoleGrid(x, y, n);
+            int[] tour = buildTour(x, y, grid, deadline);
+            improve(x, y, tour, grid, deadline);
+            for (int p = 1; p <= n; p++) {
+                ret.set(p - 1, drillHoles.get(tour[p]));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Improve an order in place. The first position of the tour holds the start, which is the point after the
+     * last hole, and it must stay there
+     *
+     * @param x the X coordinates of the holes followed by the start
+     * @param y the Y coordinates of the holes followed by the start
+     * @param tour
+     * @param grid
+     * @param deadline
+     */
+    void improve(float[] x, float[] y, int[] tour, HoleGrid grid, long deadline) {
+    }
+
+    private int[] buildTour(float[] x, float[] y, HoleGrid grid, long deadline) {
+        int n = x.length - 1;
+        int[] ret = new int[n + 1];
+        boolean[] visited = new boolean[n];
+        ret[0] = n;
+        float cx = x[n], cy = y[n];
+        int p = 1;
+        for (; p <= n; p++) {
+            if ((p & 0xff) == 0 && System.nanoTime() - deadline > 0) {
+                break;
+            }
+            int next = grid.findNearestRemaining(cx, cy);
+            grid.remove(next);
+            visited[next] = true;
+            ret[p] = next;
+            cx = x[next];
+            cy = y[next];
+        }
+        for (int i = 0; p <= n; i++) {
+            if (!visited[i]) {
+                ret[p++] = i;
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+/**
+ * Improves the nearest neighbour order with 2-opt moves, which reverse a part of the order, and Or-opt moves,
+ * which move up to three consecutive holes elsewhere. Only the moves which bring a hole next to one of its
+ * nearest neighbours in the grid are tried, and the search stops when no move shortens the travel or when the
+ * deadline passes
+ *
+ * @author Petre Maierean
+ */
+public class OptimizedDrillOrder extends NearestNeighbourDrillOrder {
+    private static final int NEIGHBOURS = 8;
+    private static final int MAX_SEGMENT = 3;
+    private static final double EPSILON = 1e-9;
+
+    @Override
+    void improve(float[] x, float[] y, int[] tour, HoleGrid grid, long deadline) {
+        new Search(x, y, tour).run(grid, deadline);
+    }
+
+    private static class Search {
+        private final float[] x, y;
+        private final int[] tour, position, queue;
+        private final boolean[] queued;
+        private final int n;
+        private final int[] segment = new int[MAX_SEGMENT];
+        private int[] neighbours;
+        private int head, size;
+
+        Search(float[] x, float[] y, int[] tour) {
+            this.x = x;
+            this.y = y;
+            this.tour = tour;
+            this.n = tour.length - 1;
+            position = new int[n + 1];
+            queue = new int[n + 1];
+            queued = new boolean[n + 1];
+            for (int p = 0; p <= n; p++) {
+                position[tour[p]] = p;
+                push(tour[p]);
+            }
+        }
+
+        void run(HoleGrid grid, long deadline) {
+            neighbours = new int[(n + 1) * NEIGHBOURS];
+            int[] found = new int[NEIGHBOURS];
+            for (int i = 0; i <= n; i++) {
+                if ((i & 0x3ff) == 0 && System.nanoTime() - deadline > 0) {
+                    return;
+                }
+                int count = i < n ? grid.findNearest(x[i], y[i], i, found) : grid.findNearest(x[n], y[n], -1, found);
+                for (int k = 0; k < NEIGHBOURS; k++) {
+                    neighbours[i * NEIGHBOURS + k] = k < count ? found[k] : -1;
+                }
+            }
+            for (long step = 0; size > 0; step++) {
+                if ((step & 0x3f) == 0 && System.nanoTime() - deadline > 0) {
+                    break;
+                }
+                int a = poll();
+                if (twoOpt(a) || orOpt(a)) {
+                    push(a);
+                }
+            }
+        }
+
+        private boolean twoOpt(int a) {
+            boolean ret = false;
+            int i = position[a];
+            double toNext = i < n ? distance(a, tour[i + 1]) : Double.MAX_VALUE;
+            double toPrevious = i > 0 ? distance(tour[i - 1], a) : -1;
+            for (int k = 0; k < NEIGHBOURS && !ret; k++) {
+                int c = neighbours[a * NEIGHBOURS + k];
+                if (c < 0) {
+                    break;
+                }
+                double d = distance(a, c);
+                if (d >= toNext && d >= toPrevious) {
+                    break;
+                }
+                int j = position[c];
+                int lo = Math.min(i, j), hi = Math.max(i, j);
+                if (hi <= lo + 1) {
+                    continue;
+                }
+                if (d < toNext && getTwoOptDelta(lo, hi) < -EPSILON) {
+                    reverse(lo, hi);
+                    ret = true;
+                } else if (d < toPrevious && lo > 0 && getTwoOptDelta(lo - 1, hi - 1) < -EPSILON) {
+                    reverse(lo - 1, hi - 1);
+                    ret = true;
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * Get the change of the travel when the edges after the positions i and j are replaced by the edges
+         * between the holes at i and j, and between the holes after them
+         */
+        private double getTwoOptDelta(int i, int j) {
+            int a = tour[i], b = tour[i + 1], c = tour[j];
+            double ret = distance(a, c) - distance(a, b);
+            if (j < n) {
+                int e = tour[j + 1];
+                ret += distance(b, e) - distance(c, e);
+            }
+            return ret;
+        }
+
+        private void reverse(int i, int j) {
+            push(tour[i]);
+            push(tour[i + 1]);
+            push(tour[j]);
+            if (j < n) {
+                push(tour[j + 1]);
+            }
+            for (int from = i + 1, to = j; from < to; from++, to--) {
+                int h = tour[from];
+                tour[from] = tour[to];
+                tour[to] = h;
+                position[tour[from]] = from;
+                position[tour[to]] = to;
+            }
+        }
+
+        private boolean orOpt(int a) {
+            boolean ret = false;
+            int i = position[a];
+            for (int length = 1; i > 0 && length <= MAX_SEGMENT && i + length - 1 <= n && !ret; length++) {
+                int last = tour[i + length - 1];
+                int previous = tour[i - 1];
+                int next = i + length <= n ? tour[i + length] : -1;
+                double removed = distance(previous, a);
+                if (next >= 0) {
+                    removed += distance(last, next) - distance(previous, next);
+                }
+                for (int k = 0; k < NEIGHBOURS && !ret; k++) {
+                    int c = neighbours[a * NEIGHBOURS + k];
+                    if (c < 0) {
+                        break;
+                    }
+                    double d = distance(a, c);
+                    if (d >= removed - EPSILON) {
+                        break;
+                    }
+                    int j = position[c];
+                    if (j >= i && j <= i + length) {
+                        continue;
+                    }
+                    if (j != i - 1) {
+                        // c, a ... last, e
+                        double added = d;
+                        if (j < n) {
+                            int e = tour[j + 1];
+                            added += distance(last, e) - distance(c, e);
+                        }
+                        if (added < removed - EPSILON) {
+                            move(i, length, j, false);
+                            ret = true;
+                            continue;
+                        }
+                    }
+                    // e, last ... a, c
+                    int e = tour[j - 1];
+                    if (j - 1 != i - 1 && distance(e, last) + d - distance(e, c) < removed - EPSILON) {
+                        move(i, length, j - 1, true);
+                        ret = true;
+                    }
+                }
+                if (ret) {
+                    push(previous);
+                    if (next >= 0) {
+                        push(next);
+                    }
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * Move the holes from the position i to after the hole at the position k, which is outside of them
+         */
+        private void move(int i, int length, int k, boolean reversed) {
+            System.arraycopy(tour, i, segment, 0, length);
+            int to;
+            if (k > i) {
+                System.arraycopy(tour, i + length, tour, i, k - i - length + 1);
+                to = k - length + 1;
+            } else {
+                System.arraycopy(tour, k + 1, tour, k + 1 + length, i - k - 1);
+                to = k + 1;
+            }
+            for (int s = 0; s < length; s++) {
+                tour[to + s] = reversed ? segment[length - 1 - s] : segment[s];
+            }
+            int from = Math.min(i, to), end = Math.max(i + length - 1, k);
+            for (int p = from; p <= end; p++) {
+                position[tour[p]] = p;
+            }
+            push(tour[to - 1]);
+            push(tour[to]);
+            push(tour[to + length - 1]);
+            if (to + length <= n) {
+                push(tour[to + length]);
+            }
+        }
+
+        private double distance(int a, int b) {
+            return DrillOrder.distance(x[a], y[a], x[b], y[b]);
+        }
+
+        private void push(int node) {
+            if (!queued[node]) {
+                queued[node] = true;
+                queue[(head + size) % queue.length] = node;
+                size++;
+            }
+        }
+
+        private int poll() {
+            int ret = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+            queued[ret] = false;
+            return ret;
+        }
+    }
+}
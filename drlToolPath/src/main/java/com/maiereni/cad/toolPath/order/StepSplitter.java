@@ -0,0 +1,39 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+
+import java.util.List;
+
+/**
+ * Splits the holes of a tool into steps of holes that are close to each other
+ *
+ * @author Petre Maierean
+ */
+public interface StepSplitter {
+    /**
+     * Split the holes. The holes of a step keep the order they were given in
+     *
+     * @param drillHoles
+     * @param maxHoles the maximum number of holes in a step
+     * @return the steps, in no particular order
+     * @throws Exception
+     */
+    List<List<DrillHole>> split(List<DrillHole> drillHoles, int maxHoles) throws Exception;
+}
@@ -0,0 +1,92 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the LineEndingWriter
+ *
+ * @author Petre Maierean
+ */
+public class LineEndingWriterTest {
+    private static final Logger logger = LogManager.getLogger(LineEndingWriterTest.class);
+
+    @Test
+    public void testSeparators() {
+        try {
+            assertEquals("^IN\r\nF 15\r\nM 500,-300\r\n", write("\r\n", "^IN;F 15;M 500,-300;"));
+            assertEquals("^IN\nF 15\n", write("\n", "^IN;F 15;"));
+            assertEquals("^IN;F 15;", write(";", "^IN;F 15;"));
+        } catch (Exception e) {
+            logger.error("Failed to replace the separators", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testLineBreaks() {
+        try {
+            assertEquals("A\r\nB\r\nC\r\nD\r\n\r\n", write("\r\n", "A\nB\r\nC\rD\n\n"));
+            assertEquals("A\nB\nC\n", write("\n", "A\r\nB\rC\r\n"));
+        } catch (Exception e) {
+            logger.error("Failed to replace the line breaks", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testSplitReturn() {
+        try {
+            String expected = "A\r\nB\r\nC\r\n\r\nD";
+            assertEquals(expected, write("\r\n", "A\r", "\nB\r", "\nC\r", "\r\nD"));
+            assertEquals(expected, write("\r\n", "A\r", "", "\nB\r\nC", "\r", "\r", "\n", "D"));
+            StringWriter sw = new StringWriter();
+            try (Writer writer = new LineEndingWriter(sw, "\r\n")) {
+                writer.write("A\r");
+                writer.write('\n');
+                writer.write("B\r".toCharArray());
+                writer.write("\nC".toCharArray());
+                writer.write('\r');
+                writer.write('\r');
+                writer.write("\nD");
+            }
+            assertEquals(expected, sw.toString());
+        } catch (Exception e) {
+            logger.error("Failed to replace a line break split between writes", e);
+            fail();
+        }
+    }
+
+    private static String write(String lineEnding, String... parts) throws Exception {
+        StringWriter ret = new StringWriter();
+        try (Writer writer = new LineEndingWriter(ret, lineEnding)) {
+            for (String part : parts) {
+                writer.write(part);
+            }
+        }
+        return ret.toString();
+    }
+}
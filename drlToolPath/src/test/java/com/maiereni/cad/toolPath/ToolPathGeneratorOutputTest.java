@@ -0,0 +1,352 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath;
+
+import com.maiereni.cad.toolPath.bo.DrillOrderStrategy;
+import com.maiereni.cad.toolPath.bo.RoutingArguments;
+import com.maiereni.cad.toolPath.bo.StepSplitStrategy;
+import com.maiereni.cad.xnc.RN1PrinterStatus;
+import com.maiereni.cad.xnc.RN1PrinterStatusFactory;
+import com.maiereni.cad.xnc.Token;
+import com.maiereni.cad.xnc.XNCParser;
+import com.maiereni.cad.xnc.XNCTokenIterator;
+import com.maiereni.cad.xnc.bo.Tool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the output of the ToolPathGenerator
+ *
+ * @author Petre Maierean
+ */
+public class ToolPathGeneratorOutputTest {
+    private static final Logger logger = LogManager.getLogger(ToolPathGeneratorOutputTest.class);
+    private static final String DRL = "M48\n; Bohrungen \u00d8 0.4 und 0.8\nMETRIC\nT1C0.400\nT2C0.800\n%\nG90\nG05\n"
+            + "T1\nX10.0Y-5.0\nX12.5Y-7.5\nX11.0Y-2.0\nT2\nX20.0Y-10.0\nX5.0Y-3.0\nT0\nM30\n";
+
+    @Test
+    public void testGenerateFromCompressed() {
+        File f = null;
+        try {
+            ToolPathGenerator generator = new ToolPathGenerator();
+            RoutingArguments arguments = createArguments();
+            Map<String, String> expected = generator.generateToolpathfromDrl(DRL, arguments);
+            assertEquals(2, expected.size());
+            byte[] content = DRL.getBytes(StandardCharsets.ISO_8859_1);
+            byte[] compressed = gzip(content);
+            assertEquals(expected, generator.generateToolpathfromDrl(new ByteArrayInputStream(content), arguments));
+            assertEquals(expected, generator.generateToolpathfromDrl(new ByteArrayInputStream(compressed), arguments));
+            f = File.createTempFile("compressed", ".drl.gz");
+            Files.write(f.toPath(), compressed);
+            assertEquals(expected, generator.generateToolpathfromDrl(f, arguments));
+
+            byte[] archive = zip("top.drl", content, "bottom.drl.gz", compressed);
+            Map<String, Map<String, String>> results =
+                    generator.generateToolpathfromZip(new ByteArrayInputStream(archive), arguments);
+            assertEquals(List.of("top.drl", "bottom.drl.gz"), new ArrayList<>(results.keySet()));
+            for (Map<String, String> result : results.values()) {
+                assertEquals(expected, result);
+                assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(result.keySet()));
+            }
+            Files.write(f.toPath(), archive);
+            assertEquals(results, generator.generateToolpathfromZip(f, arguments));
+        } catch (Exception e) {
+            logger.error("Failed to generate from compressed content", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testListAsBaseline() {
+        try {
+            List<Token> tokens = new XNCParser().parse(DRL);
+            String parsed = tokens.toString();
+            Map<String, String> expected = new LinkedHashMap<>();
+            expected.put("1 - D: 0.4", "^IN\nF 15\nM 500,-300\n!ZM -80\n!ZM 40\nM 400,-200\n!ZM -80\n!ZM 40\n"
+                    + "M 440,-80\n!ZM -80\n!ZM 40\nH\n!MC 0\n");
+            expected.put("2 - D: 0.8", "^IN\nF 15\nM 800,-400\n!ZM -80\n!ZM 40\nM 200,-120\n!ZM -80\n!ZM 40\nH\n"
+                    + "!MC 0\n");
+            ToolPathGenerator generator = new ToolPathGenerator();
+            Map<String, String> result = generator.generateToolpath(tokens, createArguments());
+            assertEquals(expected, result);
+            assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(result.keySet()));
+            assertEquals(parsed, tokens.toString());
+            assertEquals(expected, generator.generateToolpath(tokens.iterator(), createArguments()));
+            assertEquals(expected, generator.generateToolpathfromDrl(new StringReader(DRL), createArguments()));
+
+            try (XNCTokenIterator iterator = new XNCParser().iterator(new StringReader(DRL))) {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                }
+                RN1PrinterStatus status = RN1PrinterStatusFactory.get().getInitialized(tokens);
+                assertEquals(status.toString(), iterator.getStatus().toString());
+                assertEquals(status.getHoleCounts(), iterator.getStatus().getHoleCounts());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to generate from a list of tokens", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testCountAsBaseline() {
+        try {
+            Map<String, String> expected = new LinkedHashMap<>();
+            expected.put("1 - D: 0.4", "^IN;F 15;M 0,0;!ZM -80;!ZM 40;M 500,0;!ZM -80;!ZM 40;!MC 0;\r\n"
+                    + "^IN;F 15;M 500,-300;!ZM -80;!ZM 40;M 400,-200;!ZM -80;!ZM 40;!MC 0;\r\n"
+                    + "^IN;F 15;M 440,-80;!ZM -80;!ZM 40;!MC 0;\r\n");
+            expected.put("2 - D: 0.8", "^IN;F 15;M 0,0;!ZM -80;!ZM 40;M 800,0;!ZM -80;!ZM 40;!MC 0;\r\n"
+                    + "^IN;F 15;M 800,-400;!ZM -80;!ZM 40;M 200,-120;!ZM -80;!ZM 40;!MC 0;\r\n");
+            RoutingArguments arguments = createArguments();
+            arguments.setForStepping(2);
+            arguments.setStepSplit(StepSplitStrategy.count);
+            arguments.setStepSession(false);
+            Map<String, String> result = new ToolPathGenerator().generateToolpathfromDrl(DRL, arguments);
+            assertEquals(expected, result);
+            assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(result.keySet()));
+        } catch (Exception e) {
+            logger.error("Failed to generate the steps by count", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testStepSession() {
+        try {
+            String drl = createDrl(3, 400);
+            for (String content : new String[]{DRL, drl}) {
+                for (StepSplitStrategy stepSplit : StepSplitStrategy.values()) {
+                    for (boolean writeExtremes : new boolean[]{true, false}) {
+                        RoutingArguments arguments = createArguments();
+                        arguments.setForStepping(1);
+                        arguments.setStepSplit(stepSplit);
+                        arguments.setWriteExtremes(writeExtremes);
+                        assertTrue(arguments.isStepSession());
+                        Map<String, String> result = new ToolPathGenerator().generateToolpathfromDrl(content,
+                                arguments);
+                        assertFalse(result.isEmpty());
+                        for (String toolpath : result.values()) {
+                            assertTrue(toolpath.split("\r\n").length > 1);
+                            assertEquals(1, count(toolpath, "^IN;"));
+                            assertEquals(1, count(toolpath, "!MC 0;"));
+                            assertTrue(toolpath.startsWith("^IN;F 15;"));
+                            assertTrue(toolpath.endsWith("!MC 0;\r\n"));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to generate the steps in a session", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testSharedToolId() {
+        try {
+            String drl = createDrl(1, 2000);
+            String twice = drl.replace("T1C0.200\n", "T1C0.200\nT1C0.200\n");
+            assertTrue(twice.length() > drl.length());
+            RoutingArguments arguments = createArguments();
+            String expected = new ToolPathGenerator().generateToolpathfromDrl(drl, arguments).values().iterator()
+                    .next();
+            for (int threads : new int[]{1, 4}) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    Map<Tool, StringWriter> writers = Collections.synchronizedMap(new IdentityHashMap<>());
+                    new ToolPathGenerator(pool).generateToolpathfromDrl(new StringReader(twice), arguments,
+                            tool -> writers.computeIfAbsent(tool, k -> new StringWriter()));
+                    assertEquals(2, writers.size());
+                    for (StringWriter writer : writers.values()) {
+                        assertEquals(expected, writer.toString());
+                    }
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to generate for tools with the same id", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testParallelAsSequential() {
+        ForkJoinPool sequential = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            String drl = createDrl(6, 3000);
+            for (StepSplitStrategy stepSplit : new StepSplitStrategy[]{null, StepSplitStrategy.count,
+                    StepSplitStrategy.grid}) {
+                RoutingArguments arguments = createArguments();
+                arguments.setDrillOrder(DrillOrderStrategy.nearestNeighbour);
+                if (stepSplit != null) {
+                    arguments.setForStepping(100);
+                    arguments.setStepSplit(stepSplit);
+                }
+                Map<String, String> expected = new ToolPathGenerator(sequential).generateToolpathfromDrl(drl,
+                        arguments);
+                assertEquals(6, expected.size());
+                for (int i = 0; i < 3; i++) {
+                    Map<String, String> result = new ToolPathGenerator(parallel).generateToolpathfromDrl(drl,
+                            arguments);
+                    assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(result.keySet()));
+                    for (String key : expected.keySet()) {
+                        assertEquals(key, expected.get(key), result.get(key));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to generate in parallel", e);
+            fail();
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void testSinkAsMap() {
+        ForkJoinPool sequential = new ForkJoinPool(1);
+        try {
+            String drl = createDrl(4, 500);
+            for (int forStepping : new int[]{0, 50}) {
+                RoutingArguments arguments = createArguments();
+                arguments.setForStepping(forStepping);
+                arguments.setLineEnding("\r\n");
+                ToolPathGenerator generator = new ToolPathGenerator(sequential);
+                Map<String, String> expected = generator.generateToolpathfromDrl(drl, arguments);
+                assertEquals(4, expected.size());
+                Map<String, StringWriter> writers = Collections.synchronizedMap(new LinkedHashMap<>());
+                generator.generateToolpathfromDrl(new StringReader(drl), arguments,
+                        tool -> writers.computeIfAbsent(tool.toString(), k -> new StringWriter()));
+                assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(writers.keySet()));
+                for (String key : expected.keySet()) {
+                    assertEquals(key, expected.get(key), writers.get(key).toString());
+                }
+                if (forStepping == 0) {
+                    assertTrue(expected.values().iterator().next().startsWith("^IN\r\nF 15\r\n"));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to generate into a sink", e);
+            fail();
+        } finally {
+            sequential.shutdown();
+        }
+    }
+
+    @Test
+    public void testSinkNullArguments() {
+        ToolPathGenerator generator = new ToolPathGenerator();
+        File f = new File("missing.drl");
+        ToolpathSink sink = tool -> new StringWriter();
+        Object[][] cases = {{null, createArguments(), sink}, {f, null, sink}, {f, createArguments(), null}};
+        for (Object[] arguments : cases) {
+            try {
+                generator.generateToolpathfromDrl((File) arguments[0], (RoutingArguments) arguments[1],
+                        (ToolpathSink) arguments[2]);
+                fail();
+            } catch (Exception e) {
+                assertEquals("None of the arguments can be null", e.getMessage());
+            }
+        }
+    }
+
+    private static int count(String s, String part) {
+        int ret = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + part.length())) {
+            ret++;
+        }
+        return ret;
+    }
+
+    private static String createDrl(int tools, int holes) {
+        Random random = new Random(1);
+        StringBuilder ret = new StringBuilder("M48\nMETRIC\n");
+        for (int i = 1; i <= tools; i++) {
+            ret.append(String.format(Locale.ROOT, "T%dC%.3f\n", i, 0.2f * i));
+        }
+        ret.append("%\nG90\nG05\n");
+        for (int i = 1; i <= tools; i++) {
+            ret.append("T").append(i).append("\n");
+            for (int j = 0; j < holes; j++) {
+                // the holes are on rows, as the pads of components are
+                ret.append(String.format(Locale.ROOT, "X%.3fY%.3f\n", random.nextFloat() * 100,
+                        -random.nextInt(30) * 2.54f));
+            }
+        }
+        return ret.append("T0\nM30\n").toString();
+    }
+
+    private static RoutingArguments createArguments() {
+        RoutingArguments ret = new RoutingArguments();
+        ret.setUnitConversionRate(0.025f);
+        ret.setZ0(1);
+        ret.setZ1(-2);
+        ret.setWriteExtremes(true);
+        return ret;
+    }
+
+    private static byte[] gzip(byte[] content) throws Exception {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(ret)) {
+            os.write(content);
+        }
+        return ret.toByteArray();
+    }
+
+    private static byte[] zip(Object... entries) throws Exception {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        try (ZipOutputStream os = new ZipOutputStream(ret)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                os.putNextEntry(new ZipEntry((String) entries[i]));
+                os.write((byte[]) entries[i + 1]);
+                os.closeEntry();
+            }
+        }
+        return ret.toByteArray();
+    }
+}
@@ -17,7 +17,9 @@
  */
 package com.maiereni.cad.toolPath;
 
+import com.maiereni.cad.toolPath.bo.DrillOrderStrategy;
 import com.maiereni.cad.toolPath.bo.RoutingArguments;
+import com.maiereni.cad.toolPath.bo.StepSplitStrategy;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -102,6 +104,14 @@ public class ToolPathGeneratorTest {
                             routingArguments.setOffsetY(Float.parseFloat(val));
                         } else if (arg.startsWith("-unitConversion=")) {
                             routingArguments.setUnitConversionRate(Float.parseFloat(val));
+                        } else if (arg.startsWith("-drillOrder=")) {
+                            routingArguments.setDrillOrder(DrillOrderStrategy.valueOf(val));
+                        } else if (arg.startsWith("-orderingTime=")) {
+                            routingArguments.setOrderingTime(Long.parseLong(val));
+                        } else if (arg.startsWith("-stepSplit=")) {
+                            routingArguments.setStepSplit(StepSplitStrategy.valueOf(val));
+                        } else if (arg.startsWith("-stepSession=")) {
+                            routingArguments.setStepSession(Boolean.parseBoolean(val));
                         }
 
                     } else {
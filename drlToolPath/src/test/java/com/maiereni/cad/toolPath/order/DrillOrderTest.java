@@ -0,0 +1,155 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the NearestNeighbourDrillOrder and the OptimizedDrillOrder
+ *
+ * @author Petre Maierean
+ */
+public class DrillOrderTest {
+    private static final Logger logger = LogManager.getLogger(DrillOrderTest.class);
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    @Test
+    public void testPermutation() {
+        try {
+            Random random = new Random(3);
+            List<List<DrillHole>> cases = new ArrayList<>();
+            cases.add(new ArrayList<>());
+            cases.add(List.of(new DrillHole(4f, -2f)));
+            List<DrillHole> duplicates = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                duplicates.add(new DrillHole(i % 3, -(i % 2)));
+            }
+            cases.add(duplicates);
+            cases.add(createHoles(random, 1000));
+            for (DrillOrder drillOrder : getDrillOrders()) {
+                for (List<DrillHole> drillHoles : cases) {
+                    List<DrillHole> given = new ArrayList<>(drillHoles);
+                    List<DrillHole> ordered = drillOrder.order(drillHoles, 1f, 1f, NO_DEADLINE);
+                    assertNotSame(drillHoles, ordered);
+                    assertEquals(given, drillHoles);
+                    assertPermutation(drillHoles, ordered);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to order the holes", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testOptimizedNotLonger() {
+        try {
+            Random random = new Random(7);
+            for (int round = 0; round < 10; round++) {
+                List<DrillHole> drillHoles = round % 2 == 0 ? createHoles(random, 50 + random.nextInt(2000))
+                        : createClusters(random, 50 + random.nextInt(2000));
+                float startX = random.nextFloat() * 100f, startY = -random.nextFloat() * 100f;
+                List<DrillHole> nearest = new NearestNeighbourDrillOrder().order(drillHoles, startX, startY,
+                        NO_DEADLINE);
+                List<DrillHole> optimized = new OptimizedDrillOrder().order(drillHoles, startX, startY, NO_DEADLINE);
+                assertPermutation(drillHoles, optimized);
+                double travel = DrillOrder.getTravel(nearest, startX, startY);
+                assertTrue(DrillOrder.getTravel(optimized, startX, startY) <= travel * (1 + 1e-9));
+                assertTrue(travel <= DrillOrder.getTravel(drillHoles, startX, startY));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to order the holes", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testStopsAtDeadline() {
+        try {
+            List<DrillHole> drillHoles = createHoles(new Random(5), 200000);
+            for (DrillOrder drillOrder : getDrillOrders()) {
+                long start = System.nanoTime();
+                List<DrillHole> ordered = drillOrder.order(drillHoles, start + 50 * 1000000L);
+                long millis = (System.nanoTime() - start) / 1000000L;
+                logger.debug("{} ordered {} holes in {} ms", drillOrder.getClass().getSimpleName(),
+                        drillHoles.size(), millis);
+                assertPermutation(drillHoles, ordered);
+                // the grid is built before the deadline is looked at
+                assertTrue(millis < 1000);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to order the holes", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testNull() {
+        try {
+            new OptimizedDrillOrder().order(null, NO_DEADLINE);
+            fail();
+        } catch (Exception e) {
+            assertEquals("The argument is null", e.getMessage());
+        }
+    }
+
+    private static DrillOrder[] getDrillOrders() {
+        return new DrillOrder[]{new NearestNeighbourDrillOrder(), new OptimizedDrillOrder()};
+    }
+
+    private static void assertPermutation(List<DrillHole> expected, List<DrillHole> actual) {
+        assertEquals(expected.size(), actual.size());
+        Map<DrillHole, Integer> counts = new IdentityHashMap<>();
+        for (DrillHole drillHole : expected) {
+            counts.merge(drillHole, 1, Integer::sum);
+        }
+        for (DrillHole drillHole : actual) {
+            assertTrue(counts.merge(drillHole, -1, Integer::sum) >= 0);
+        }
+    }
+
+    private static List<DrillHole> createHoles(Random random, int count) {
+        List<DrillHole> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(new DrillHole(random.nextFloat() * 300f, -random.nextFloat() * 200f));
+        }
+        return ret;
+    }
+
+    private static List<DrillHole> createClusters(Random random, int count) {
+        List<DrillHole> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int cluster = random.nextInt(5);
+            ret.add(new DrillHole(cluster * 50f + random.nextFloat(), -cluster * 30f - random.nextFloat()));
+        }
+        Collections.shuffle(ret, random);
+        return ret;
+    }
+}
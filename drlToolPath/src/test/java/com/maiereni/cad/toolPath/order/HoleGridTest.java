@@ -0,0 +1,130 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the HoleGrid, against searches through all the points
+ *
+ * @author Petre Maierean
+ */
+public class HoleGridTest {
+
+    @Test
+    public void testFindNearestRemaining() {
+        Random random = new Random(21);
+        for (int round = 0; round < 20; round++) {
+            int count = 1 + random.nextInt(400);
+            float[] x = new float[count], y = new float[count];
+            fill(random, x, y, round % 3);
+            HoleGrid grid = new HoleGrid(x, y, count);
+            boolean[] removed = new boolean[count];
+            assertEquals(count, grid.getRemaining());
+            for (int left = count; left > 0; left--) {
+                float px = random.nextFloat() * 120f - 10f, py = random.nextFloat() * 120f - 10f;
+                int found = grid.findNearestRemaining(px, py);
+                assertTrue(found >= 0 && !removed[found]);
+                assertEquals(getNearest(x, y, removed, px, py, -1), getDistance2(x, y, found, px, py), 0d);
+                int point = random.nextBoolean() ? found : getAny(random, removed);
+                grid.remove(point);
+                removed[point] = true;
+                assertEquals(left - 1, grid.getRemaining());
+            }
+            assertEquals(-1, grid.findNearestRemaining(0f, 0f));
+        }
+    }
+
+    @Test
+    public void testFindNearest() {
+        Random random = new Random(12);
+        for (int round = 0; round < 20; round++) {
+            int count = 1 + random.nextInt(400);
+            float[] x = new float[count], y = new float[count];
+            fill(random, x, y, round % 3);
+            HoleGrid grid = new HoleGrid(x, y, count);
+            boolean[] removed = new boolean[count];
+            for (int i = 0; i < count / 2; i++) {
+                grid.remove(i);
+            }
+            int[] neighbours = new int[8];
+            for (int q = 0; q < 50; q++) {
+                int exclude = q % 2 == 0 ? random.nextInt(count) : -1;
+                float px = exclude >= 0 ? x[exclude] : random.nextFloat() * 120f - 10f;
+                float py = exclude >= 0 ? y[exclude] : random.nextFloat() * 120f - 10f;
+                int found = grid.findNearest(px, py, exclude, neighbours);
+                assertEquals(Math.min(neighbours.length, exclude >= 0 ? count - 1 : count), found);
+                // the removed points are still found, nearest first
+                boolean[] taken = removed.clone();
+                for (int i = 0; i < found; i++) {
+                    assertTrue(neighbours[i] != exclude && !taken[neighbours[i]]);
+                    assertEquals(getNearest(x, y, taken, px, py, exclude),
+                            getDistance2(x, y, neighbours[i], px, py), 0d);
+                    taken[neighbours[i]] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill with uniform points, with clusters or with many points at the same places
+     */
+    private static void fill(Random random, float[] x, float[] y, int kind) {
+        for (int i = 0; i < x.length; i++) {
+            if (kind == 0) {
+                x[i] = random.nextFloat() * 100f;
+                y[i] = random.nextFloat() * 100f;
+            } else if (kind == 1) {
+                int cluster = random.nextInt(3);
+                x[i] = cluster * 40f + random.nextFloat() * 0.5f;
+                y[i] = cluster * 30f + random.nextFloat() * 0.5f;
+            } else {
+                x[i] = random.nextInt(4) * 10f;
+                y[i] = random.nextInt(3) * 10f;
+            }
+        }
+    }
+
+    private static double getNearest(float[] x, float[] y, boolean[] removed, float px, float py, int exclude) {
+        double ret = Double.MAX_VALUE;
+        for (int i = 0; i < x.length; i++) {
+            if (!removed[i] && i != exclude) {
+                ret = Math.min(ret, getDistance2(x, y, i, px, py));
+            }
+        }
+        return ret;
+    }
+
+    private static double getDistance2(float[] x, float[] y, int point, float px, float py) {
+        double dx = x[point] - px;
+        double dy = y[point] - py;
+        return dx * dx + dy * dy;
+    }
+
+    private static int getAny(Random random, boolean[] removed) {
+        int ret = random.nextInt(removed.length);
+        while (removed[ret]) {
+            ret = (ret + 1) % removed.length;
+        }
+        return ret;
+    }
+}
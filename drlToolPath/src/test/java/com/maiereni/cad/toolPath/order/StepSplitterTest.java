@@ -0,0 +1,154 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.toolPath.order;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the GridStepSplitter and the KMeansStepSplitter
+ *
+ * @author Petre Maierean
+ */
+public class StepSplitterTest {
+    private static final Logger logger = LogManager.getLogger(StepSplitterTest.class);
+
+    @Test
+    public void testSteps() {
+        try {
+            Random random = new Random(11);
+            List<List<DrillHole>> cases = new ArrayList<>();
+            cases.add(new ArrayList<>());
+            cases.add(List.of(new DrillHole(4f, -2f)));
+            List<DrillHole> duplicates = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                duplicates.add(new DrillHole(i % 3 == 0 ? 5f : 5.5f, -2f));
+            }
+            cases.add(duplicates);
+            cases.add(createHoles(random, 3000));
+            cases.add(createRows(random, 3000));
+            for (StepSplitter stepSplitter : getStepSplitters()) {
+                for (List<DrillHole> drillHoles : cases) {
+                    for (int maxHoles : new int[]{1, 7, 100, 5000}) {
+                        List<List<DrillHole>> steps = stepSplitter.split(drillHoles, maxHoles);
+                        assertSteps(drillHoles, steps, maxHoles);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to split the holes", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testPacked() {
+        try {
+            Random random = new Random(13);
+            List<List<DrillHole>> cases = List.of(createHoles(random, 20000), createRows(random, 20000));
+            for (StepSplitter stepSplitter : getStepSplitters()) {
+                for (List<DrillHole> drillHoles : cases) {
+                    for (int maxHoles : new int[]{50, 100}) {
+                        List<List<DrillHole>> steps = stepSplitter.split(drillHoles, maxHoles);
+                        int count = (drillHoles.size() + maxHoles - 1) / maxHoles;
+                        logger.debug("{} made {} steps of at most {} holes, against {} by count",
+                                stepSplitter.getClass().getSimpleName(), steps.size(), maxHoles, count);
+                        assertTrue(steps.size() <= count * 3 / 2);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to split the holes", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        for (StepSplitter stepSplitter : getStepSplitters()) {
+            try {
+                stepSplitter.split(null, 10);
+                fail();
+            } catch (Exception e) {
+                assertEquals("The argument is null", e.getMessage());
+            }
+            try {
+                stepSplitter.split(createHoles(new Random(1), 10), 0);
+                fail();
+            } catch (Exception e) {
+                assertEquals("The maximum number of holes in a step must be positive", e.getMessage());
+            }
+        }
+    }
+
+    private static StepSplitter[] getStepSplitters() {
+        return new StepSplitter[]{new GridStepSplitter(), new KMeansStepSplitter()};
+    }
+
+    /**
+     * Every step is not empty and fits, the steps hold all the holes once, and the holes of a step keep the
+     * order they were given in
+     */
+    private static void assertSteps(List<DrillHole> drillHoles, List<List<DrillHole>> steps, int maxHoles) {
+        Map<DrillHole, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < drillHoles.size(); i++) {
+            indexes.put(drillHoles.get(i), i);
+        }
+        int total = 0;
+        for (List<DrillHole> step : steps) {
+            assertFalse(step.isEmpty());
+            assertTrue(step.size() <= maxHoles);
+            int last = -1;
+            for (DrillHole drillHole : step) {
+                Integer index = indexes.remove(drillHole);
+                assertNotNull(index);
+                assertTrue(index > last);
+                last = index;
+            }
+            total += step.size();
+        }
+        assertEquals(drillHoles.size(), total);
+        assertTrue(indexes.isEmpty());
+    }
+
+    private static List<DrillHole> createHoles(Random random, int count) {
+        List<DrillHole> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(new DrillHole(random.nextFloat() * 300f, -random.nextFloat() * 200f));
+        }
+        return ret;
+    }
+
+    private static List<DrillHole> createRows(Random random, int count) {
+        List<DrillHole> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(new DrillHole(random.nextInt(40) * 7f + random.nextInt(10) * 2.54f, -random.nextInt(60) * 3f));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.util.Objects;
+
+/**
+ * The format of the coordinates declared by the METRIC header. The digits of a coordinate written without a
+ * decimal point are counted in the least significant digit of the format, which for the default 3.3 metric
+ * format is the micrometre. Such a coordinate is only accepted when the header declares the zero suppression
+ * (LZ or TZ) or the number of digits, as in METRIC,TZ,000.000
+ * <ul>
+ *     <li>LZ: the leading zeros are written and the trailing zeros are suppressed, so the digits are aligned
+ *     to the left of the format</li>
+ *     <li>TZ: the trailing zeros are written and the leading zeros are suppressed, so the digits are aligned
+ *     to the right of the format</li>
+ * </ul>
+ *
+ * @author Petre Maierean
+ */
+public class CoordinateFormat {
+    public static final CoordinateFormat DECIMAL_POINT = new CoordinateFormat(false, false, 3, 3);
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    private final boolean impliedDecimal, leadingZeros;
+    private final int integerDigits, decimalDigits;
+
+    public CoordinateFormat(boolean impliedDecimal, boolean leadingZeros, int integerDigits, int decimalDigits) {
+        this.impliedDecimal = impliedDecimal;
+        this.leadingZeros = leadingZeros;
+        this.integerDigits = integerDigits;
+        this.decimalDigits = decimalDigits;
+    }
+
+    /**
+     * Get the format declared by the parameters of a METRIC header, such as TZ,000.000. The parameters which are
+     * not a zero suppression or a number of digits that the format can hold are ignored
+     *
+     * @param parameters the text after METRIC, without the first comma. It can be null
+     * @return
+     */
+    public static CoordinateFormat fromMetric(String parameters) {
+        CoordinateFormat ret = DECIMAL_POINT;
+        if (parameters != null && !parameters.isEmpty()) {
+            boolean leadingZeros = false;
+            int integerDigits = DECIMAL_POINT.integerDigits, decimalDigits = DECIMAL_POINT.decimalDigits;
+            for (String parameter : parameters.split(",")) {
+                if (parameter.equals("LZ")) {
+                    leadingZeros = true;
+                } else if (parameter.equals("TZ")) {
+                    leadingZeros = false;
+                } else if (parameter.matches("0+(\\x2e0+)?") && parameter.length() <= POWERS_OF_TEN.length) {
+                    int ix = parameter.indexOf('.');
+                    integerDigits = ix < 0 ? parameter.length() : ix;
+                    decimalDigits = ix < 0 ? 0 : parameter.length() - ix - 1;
+                }
+            }
+            ret = new CoordinateFormat(true, leadingZeros, integerDigits, decimalDigits);
+        }
+        return ret;
+    }
+
+    /**
+     * Convert the digits of a number written without a decimal point to fixed point
+     *
+     * @param digits the value of the digits
+     * @param count the number of digits written
+     * @return
+     */
+    public long toFixedImplied(long digits, int count) {
+        long ret = digits;
+        if (leadingZeros) {
+            int missing = integerDigits + decimalDigits - count;
+            if (missing > 0) {
+                ret = digits * POWERS_OF_TEN[missing];
+            } else if (missing < 0) {
+                long divisor = POWERS_OF_TEN[Math.min(-missing, POWERS_OF_TEN.length - 1)];
+                ret = (digits + divisor / 2) / divisor;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Convert a fixed point value to a float in the units of the file
+     *
+     * @param fixed
+     * @return
+     */
+    public float toFloat(long fixed) {
+        return (float) ((double) fixed / POWERS_OF_TEN[decimalDigits]);
+    }
+
+    /**
+     * Check if the coordinates can be written without a decimal point
+     *
+     * @return
+     */
+    public boolean isImpliedDecimal() {
+        return impliedDecimal;
+    }
+
+    public boolean isLeadingZeros() {
+        return leadingZeros;
+    }
+
+    public int getIntegerDigits() {
+        return integerDigits;
+    }
+
+    public int getDecimalDigits() {
+        return decimalDigits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        boolean ret = o == this;
+        if (!ret && o instanceof CoordinateFormat) {
+            CoordinateFormat format = (CoordinateFormat) o;
+            ret = impliedDecimal == format.impliedDecimal && leadingZeros == format.leadingZeros
+                    && integerDigits == format.integerDigits && decimalDigits == format.decimalDigits;
+        }
+        return ret;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(impliedDecimal, leadingZeros, integerDigits, decimalDigits);
+    }
+
+    @Override
+    public String toString() {
+        return (leadingZeros ? "LZ " : "TZ ") + integerDigits + "." + decimalDigits;
+    }
+}
@@ -0,0 +1,328 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.util.Arrays;
+
+/**
+ * A k-d tree over the holes of a drill hole table, for rectangle, radius and nearest neighbour queries. The
+ * tree is implicit: the coordinates are copied and reordered so that the middle of every range splits it on
+ * X or on Y, alternately, and the small ranges at the bottom are scanned. Building it takes O(n log n) and
+ * the queries visit only the ranges which may hold an answer. The queries return the positions of the holes
+ * in the table, which is not referenced afterwards, so the index has to be built again once the table is
+ * changed or sorted
+ *
+ * @author Petre Maierean
+ */
+public class DrillHoleIndex {
+    private static final int LEAF_SIZE = 8;
+    private final float[] x, y;
+    private final int[] holes;
+    private final int size;
+
+    /**
+     * Build the index of the holes of a table
+     *
+     * @param table
+     */
+    public DrillHoleIndex(DrillHoleTable table) {
+        size = table.size();
+        x = Arrays.copyOf(table.xArray(), size);
+        y = Arrays.copyOf(table.yArray(), size);
+        holes = new int[size];
+        for (int i = 0; i < size; i++) {
+            holes[i] = i;
+        }
+        build(0, size, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the holes inside a rectangle, the edges included
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return the positions of the holes in the table, in no particular order
+     */
+    public int[] findInRectangle(float minX, float minY, float maxX, float maxY) {
+        Hits ret = new Hits();
+        if (minX <= maxX && minY <= maxY) {
+            findInRectangle(0, size, 0, minX, minY, maxX, maxY, ret);
+        }
+        return ret.toArray();
+    }
+
+    /**
+     * Find the holes within a distance of a point, the circle included
+     *
+     * @param cx
+     * @param cy
+     * @param radius
+     * @return the positions of the holes in the table, in no particular order
+     */
+    public int[] findInRadius(float cx, float cy, float radius) {
+        Hits ret = new Hits();
+        if (radius >= 0) {
+            findInRadius(0, size, 0, cx, cy, radius, (double) radius * radius, ret);
+        }
+        return ret.toArray();
+    }
+
+    /**
+     * Find the holes nearest to a point
+     *
+     * @param cx
+     * @param cy
+     * @param k the number of holes to find
+     * @return the positions of at most k holes in the table, from the nearest to the farthest
+     */
+    public int[] findNearest(float cx, float cy, int k) {
+        Neighbours neighbours = new Neighbours(Math.min(Math.max(k, 0), size));
+        if (neighbours.capacity > 0) {
+            findNearest(0, size, 0, cx, cy, neighbours);
+        }
+        return neighbours.toSortedArray();
+    }
+
+    private void build(int from, int to, int depth) {
+        while (to - from > LEAF_SIZE) {
+            int mid = (from + to) >>> 1;
+            select(from, to, mid, (depth & 1) == 0 ? x : y);
+            build(from, mid, depth + 1);
+            from = mid + 1;
+            depth++;
+        }
+    }
+
+    /**
+     * Reorder a range so that the element at a position is the one a sort would put there, the smaller ones
+     * before it and the larger ones after it. The partition is three way, since holes on a grid share many
+     * coordinates
+     */
+    private void select(int from, int to, int k, float[] keys) {
+        int lo = from, hi = to - 1;
+        while (lo < hi) {
+            float pivot = median(keys[lo], keys[(lo + hi) >>> 1], keys[hi]);
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                if (keys[i] < pivot) {
+                    swap(lt++, i++);
+                } else if (keys[i] > pivot) {
+                    swap(i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static float median(float a, float b, float c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private void swap(int i, int j) {
+        float f = x[i];
+        x[i] = x[j];
+        x[j] = f;
+        f = y[i];
+        y[i] = y[j];
+        y[j] = f;
+        int h = holes[i];
+        holes[i] = holes[j];
+        holes[j] = h;
+    }
+
+    private void findInRectangle(int from, int to, int depth, float minX, float minY, float maxX, float maxY,
+                                 Hits hits) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                if (x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY) {
+                    hits.add(holes[i]);
+                }
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        boolean onX = (depth & 1) == 0;
+        float split = onX ? x[mid] : y[mid];
+        if ((onX ? minX : minY) <= split) {
+            findInRectangle(from, mid, depth + 1, minX, minY, maxX, maxY, hits);
+        }
+        if (x[mid] >= minX && x[mid] <= maxX && y[mid] >= minY && y[mid] <= maxY) {
+            hits.add(holes[mid]);
+        }
+        if ((onX ? maxX : maxY) >= split) {
+            findInRectangle(mid + 1, to, depth + 1, minX, minY, maxX, maxY, hits);
+        }
+    }
+
+    private void findInRadius(int from, int to, int depth, float cx, float cy, float radius, double radius2,
+                              Hits hits) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                if (distance2(i, cx, cy) <= radius2) {
+                    hits.add(holes[i]);
+                }
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        boolean onX = (depth & 1) == 0;
+        float split = onX ? x[mid] : y[mid];
+        float c = onX ? cx : cy;
+        if (c - radius <= split) {
+            findInRadius(from, mid, depth + 1, cx, cy, radius, radius2, hits);
+        }
+        if (distance2(mid, cx, cy) <= radius2) {
+            hits.add(holes[mid]);
+        }
+        if (c + radius >= split) {
+            findInRadius(mid + 1, to, depth + 1, cx, cy, radius, radius2, hits);
+        }
+    }
+
+    private void findNearest(int from, int to, int depth, float cx, float cy, Neighbours neighbours) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                neighbours.offer(holes[i], distance2(i, cx, cy));
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        boolean onX = (depth & 1) == 0;
+        double d = (onX ? cx : cy) - (onX ? x[mid] : y[mid]);
+        // the side of the point first, the other one only if it may hold a nearer hole
+        if (d <= 0) {
+            findNearest(from, mid, depth + 1, cx, cy, neighbours);
+        } else {
+            findNearest(mid + 1, to, depth + 1, cx, cy, neighbours);
+        }
+        neighbours.offer(holes[mid], distance2(mid, cx, cy));
+        if (d * d <= neighbours.worst()) {
+            if (d <= 0) {
+                findNearest(mid + 1, to, depth + 1, cx, cy, neighbours);
+            } else {
+                findNearest(from, mid, depth + 1, cx, cy, neighbours);
+            }
+        }
+    }
+
+    private double distance2(int i, float cx, float cy) {
+        double dx = x[i] - cx, dy = y[i] - cy;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * A growing array of hole positions
+     */
+    private static class Hits {
+        private int[] holes = new int[16];
+        private int size;
+
+        void add(int hole) {
+            if (size == holes.length) {
+                holes = Arrays.copyOf(holes, size * 2);
+            }
+            holes[size++] = hole;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(holes, size);
+        }
+    }
+
+    /**
+     * The nearest holes found so far, in a max heap on the squared distance
+     */
+    private static class Neighbours {
+        private final int capacity;
+        private final int[] holes;
+        private final double[] distances;
+        private int size;
+
+        Neighbours(int capacity) {
+            this.capacity = capacity;
+            holes = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        /**
+         * Get the squared distance a hole has to beat to be taken
+         */
+        double worst() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int hole, double distance) {
+            if (size < capacity) {
+                int i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    holes[i] = holes[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                holes[i] = hole;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                siftDown(0, hole, distance);
+            }
+        }
+
+        private void siftDown(int i, int hole, double distance) {
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                holes[i] = holes[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            holes[i] = hole;
+            distances[i] = distance;
+        }
+
+        int[] toSortedArray() {
+            int[] ret = new int[size];
+            // take the farthest out of the heap until it is empty
+            while (size > 0) {
+                int last = --size;
+                ret[last] = holes[0];
+                if (last > 0) {
+                    siftDown(0, holes[last], distances[last]);
+                }
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.util.*;
+
+/**
+ * A columnar table of drill holes. The coordinates and the index of the tool of each hole are kept in parallel
+ * primitive arrays which double in size as the table grows. The index of the tool points in the list of tool
+ * definitions of the table, and it is -1 for a hole drilled without a defined tool being selected. The table
+ * keeps the bounds of the holes and the number of holes of each tool as they are added
+ *
+ * @author Petre Maierean
+ */
+public class DrillHoleTable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private float[] x, y;
+    private int[] toolIndex;
+    private int[] holeCounts = new int[0];
+    private int size;
+    private float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+    private float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+    private final List<Tool> tools = new ArrayList<>();
+    private final Map<String, Integer> toolIndexes = new HashMap<>();
+
+    public DrillHoleTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public DrillHoleTable(int capacity) {
+        capacity = Math.max(capacity, 1);
+        x = new float[capacity];
+        y = new float[capacity];
+        toolIndex = new int[capacity];
+    }
+
+    /**
+     * Add a tool definition. When several tools have the same id, the lookup by id finds the first one
+     *
+     * @param tool
+     * @return the index of the tool
+     */
+    public int addTool(Tool tool) {
+        int ret = tools.size();
+        tools.add(tool);
+        toolIndexes.putIfAbsent(tool.getId(), ret);
+        return ret;
+    }
+
+    /**
+     * Get the index of a tool
+     *
+     * @param id
+     * @return the index or -1 if no tool with the id has been defined
+     */
+    public int indexOfTool(String id) {
+        Integer ret = toolIndexes.get(id);
+        return ret == null ? -1 : ret;
+    }
+
+    public List<Tool> getTools() {
+        return Collections.unmodifiableList(tools);
+    }
+
+    /**
+     * Add a drill hole
+     *
+     * @param x
+     * @param y
+     * @param toolIndex
+     */
+    public void add(float x, float y, int toolIndex) {
+        if (size == this.x.length) {
+            int capacity = size * 2;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.toolIndex = Arrays.copyOf(this.toolIndex, capacity);
+        }
+        this.x[size] = x;
+        this.y[size] = y;
+        this.toolIndex[size] = toolIndex;
+        size++;
+        if (toolIndex >= 0) {
+            if (toolIndex >= holeCounts.length) {
+                holeCounts = Arrays.copyOf(holeCounts, Math.max(toolIndex + 1, holeCounts.length * 2));
+            }
+            holeCounts[toolIndex]++;
+        }
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+    }
+
+    /**
+     * Get the number of holes of a tool
+     *
+     * @param toolIndex
+     * @return
+     */
+    public int getHoleCount(int toolIndex) {
+        return toolIndex >= 0 && toolIndex < holeCounts.length ? holeCounts[toolIndex] : 0;
+    }
+
+    /**
+     * Get the smallest X of the holes. The bounds are infinite while the table is empty
+     *
+     * @return
+     */
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float getX(int index) {
+        checkIndex(index);
+        return x[index];
+    }
+
+    public float getY(int index) {
+        checkIndex(index);
+        return y[index];
+    }
+
+    public int getToolIndex(int index) {
+        checkIndex(index);
+        return toolIndex[index];
+    }
+
+    /**
+     * Get the drill holes of a tool, in the order of the table
+     *
+     * @param toolIndex
+     * @return
+     */
+    public List<DrillHole> getDrillHoles(int toolIndex) {
+        List<DrillHole> ret = new ArrayList<>(toolIndex >= 0 ? getHoleCount(toolIndex) : 10);
+        for (int i = 0; i < size; i++) {
+            if (this.toolIndex[i] == toolIndex) {
+                ret.add(new DrillHole(x[i], y[i]));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Sort the holes by the index of the tool and then by Y. The sort is stable, so the holes of a tool with the
+     * same Y keep the order in which they have been added
+     */
+    public void sort() {
+        long[] keys = new long[size];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) toolIndex[i] << 32) | (sortableBits(y[i]) & 0xFFFFFFFFL);
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], keys, 0, size);
+        float[] sortedX = new float[x.length], sortedY = new float[y.length];
+        int[] sortedToolIndex = new int[toolIndex.length];
+        for (int i = 0; i < size; i++) {
+            int j = order[i];
+            sortedX[i] = x[j];
+            sortedY[i] = y[j];
+            sortedToolIndex[i] = toolIndex[j];
+        }
+        x = sortedX;
+        y = sortedY;
+        toolIndex = sortedToolIndex;
+    }
+
+    /**
+     * Replace the content of the table with arrays read in bulk. The arrays are adopted, not copied
+     */
+    void restore(float[] x, float[] y, int[] toolIndex, int size, int[] holeCounts, float[] bounds) {
+        this.x = x;
+        this.y = y;
+        this.toolIndex = toolIndex;
+        this.size = size;
+        this.holeCounts = holeCounts;
+        minX = bounds[0];
+        maxX = bounds[1];
+        minY = bounds[2];
+        maxY = bounds[3];
+    }
+
+    float[] xArray() {
+        return x;
+    }
+
+    float[] yArray() {
+        return y;
+    }
+
+    int[] toolIndexArray() {
+        return toolIndex;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Maps the bits of a float to an int which orders as the float values do, when compared as unsigned
+     */
+    private static int sortableBits(float f) {
+        int bits = Float.floatToIntBits(f);
+        return bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE;
+    }
+
+    private static void mergeSort(int[] order, int[] buffer, long[] keys, int from, int to) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int o = order[i];
+                int j = i - 1;
+                for (; j >= from && keys[order[j]] > keys[o]; j--) {
+                    order[j + 1] = order[j];
+                }
+                order[j + 1] = o;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, keys, from, middle);
+        mergeSort(order, buffer, keys, middle, to);
+        if (keys[order[middle - 1]] <= keys[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        for (int i = from, l = from, r = middle; i < to; i++) {
+            if (r >= to || (l < middle && keys[buffer[l]] <= keys[buffer[r]])) {
+                order[i] = buffer[l++];
+            } else {
+                order[i] = buffer[r++];
+            }
+        }
+    }
+
+    /**
+     * Fills a table from the content of a XNC file. A hole belongs to the tool selected last, as
+     * XNCSelectionHandler tracks it, or to no tool
+     */
+    public static class Filler extends XNCSelectionHandler<Integer> {
+        private final DrillHoleTable table;
+
+        public Filler(DrillHoleTable table) {
+            this.table = table;
+        }
+
+        @Override
+        public void onDrill(float x, float y) {
+            Integer selected = getSelected();
+            table.add(x, y, selected == null ? -1 : selected);
+        }
+
+        @Override
+        protected Integer resolve(String id) {
+            int ret = table.indexOfTool(id);
+            return ret < 0 ? null : ret;
+        }
+
+        @Override
+        public void onTool(String id, float diameter) {
+            table.addTool(new Tool(id, diameter));
+            setSelected(null);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.util.*;
+
+/**
+ * The holes of a set of drill files, merged by tool. The tools come from a ToolDictionary, so a tool of the
+ * same diameter in several files is a single tool here. The holes of a tool are in the order of the files and,
+ * within a file, in the order in which they are drilled
+ *
+ * @author Petre Maierean
+ */
+public class DrillSet {
+    private final List<String> sources;
+    private final List<Tool> tools;
+    private final Map<Tool, List<DrillHole>> drillHoles;
+    private final Map<Tool, int[]> holeCounts;
+
+    /**
+     * Merge the holes of each file
+     *
+     * @param sources the names of the files
+     * @param tools the tools by increasing diameter
+     * @param fileHoles the holes of each file by tool, in the order of the sources
+     */
+    DrillSet(List<String> sources, List<Tool> tools, List<Map<Tool, List<DrillHole>>> fileHoles) {
+        this.sources = Collections.unmodifiableList(new ArrayList<>(sources));
+        this.tools = Collections.unmodifiableList(new ArrayList<>(tools));
+        drillHoles = new IdentityHashMap<>();
+        holeCounts = new IdentityHashMap<>();
+        for (Tool tool : tools) {
+            int[] counts = new int[fileHoles.size()];
+            int size = 0;
+            for (int i = 0; i < counts.length; i++) {
+                List<DrillHole> holes = fileHoles.get(i).get(tool);
+                counts[i] = holes == null ? 0 : holes.size();
+                size += counts[i];
+            }
+            List<DrillHole> merged = new ArrayList<>(size);
+            for (Map<Tool, List<DrillHole>> holes : fileHoles) {
+                merged.addAll(holes.getOrDefault(tool, Collections.emptyList()));
+            }
+            drillHoles.put(tool, Collections.unmodifiableList(merged));
+            holeCounts.put(tool, counts);
+        }
+    }
+
+    /**
+     * Get the names of the files, in the order in which their holes are merged
+     *
+     * @return
+     */
+    public List<String> getSources() {
+        return sources;
+    }
+
+    /**
+     * Get the tools of all the files by increasing diameter
+     *
+     * @return
+     */
+    public List<Tool> getTools() {
+        return tools;
+    }
+
+    /**
+     * Get the holes of a tool across all the files
+     *
+     * @param tool
+     * @return
+     */
+    public List<DrillHole> getDrillHoles(Tool tool) {
+        List<DrillHole> ret = drillHoles.get(tool);
+        return ret == null ? Collections.emptyList() : ret;
+    }
+
+    /**
+     * Get the number of holes of a tool across all the files
+     *
+     * @param tool
+     * @return
+     */
+    public int getHoleCount(Tool tool) {
+        return getDrillHoles(tool).size();
+    }
+
+    /**
+     * Get the number of holes of a tool in one of the files
+     *
+     * @param tool
+     * @param source the index of the file
+     * @return
+     */
+    public int getHoleCount(Tool tool, int source) {
+        int[] counts = holeCounts.get(tool);
+        return counts == null || source < 0 || source >= counts.length ? 0 : counts[source];
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Parses the drill files of a board, for example the plated, the non plated and the blind via ones, each on
+ * its own worker of a fork join pool. The files share a ToolDictionary, so the tools with the same diameter
+ * resolve to one Tool, and the result is a single DrillSet with the holes of each tool across the files. A
+ * hole belongs to the tool selected last, as XNCSelectionHandler tracks it. The holes of a tool which is not
+ * defined in the header of its file have no diameter and are left out. The files must all declare METRIC
+ * units or none of them, see ToolDictionary
+ *
+ * @author Petre Maierean
+ */
+public class DrillSetParser {
+    private final Supplier<XNCParser> parsers;
+    private final ForkJoinPool pool;
+
+    public DrillSetParser(Supplier<XNCParser> parsers) {
+        this(parsers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a parser
+     *
+     * @param parsers creates a parser for each file
+     * @param pool the pool to parse the files on
+     */
+    public DrillSetParser(Supplier<XNCParser> parsers, ForkJoinPool pool) {
+        this.parsers = parsers;
+        this.pool = pool;
+    }
+
+    /**
+     * Parse a set of drill files with a new tool dictionary
+     *
+     * @param files
+     * @return
+     * @throws Exception a file cannot be parsed
+     */
+    public DrillSet parse(List<File> files) throws Exception {
+        return parse(files, new ToolDictionary());
+    }
+
+    /**
+     * Parse a set of drill files
+     *
+     * @param files
+     * @param dictionary the dictionary to resolve the tools with, which may be shared with other parses
+     * @return the holes of the files, by the tools defined in them
+     * @throws Exception a file cannot be parsed
+     */
+    public DrillSet parse(List<File> files, ToolDictionary dictionary) throws Exception {
+        if (files == null || dictionary == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        List<FileTask> tasks = new ArrayList<>(files.size());
+        for (File f : files) {
+            tasks.add(new FileTask(f, dictionary));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        List<Map<Tool, List<DrillHole>>> fileHoles = new ArrayList<>(files.size());
+        List<String> sources = new ArrayList<>(files.size());
+        Set<Tool> tools = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FileTask task : tasks) {
+            if (task.failure != null) {
+                throw new Exception("Cannot parse the file " + task.f.getPath() + ": " + task.failure.getMessage(),
+                        task.failure);
+            }
+            sources.add(task.f.getPath());
+            fileHoles.add(task.collector.drillHoles);
+            tools.addAll(task.collector.tools.values());
+        }
+        // the dictionary may hold the tools of other parses as well
+        List<Tool> sorted = new ArrayList<>(tools);
+        sorted.sort(Comparator.comparingDouble(Tool::getDiameter));
+        return new DrillSet(sources, sorted, fileHoles);
+    }
+
+    /**
+     * Parses a file. The failure is kept, to be reported with the name of the file
+     */
+    private class FileTask extends RecursiveAction {
+        private final File f;
+        private final Collector collector;
+        private Exception failure;
+
+        FileTask(File f, ToolDictionary dictionary) {
+            this.f = f;
+            collector = new Collector(dictionary);
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                parsers.get().parse(f, collector);
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Collects the holes of a file by the tools of the dictionary
+     */
+    private static class Collector extends XNCSelectionHandler<List<DrillHole>> {
+        private final ToolDictionary dictionary;
+        private final Map<String, Tool> tools = new HashMap<>();
+        private final Map<Tool, List<DrillHole>> drillHoles = new IdentityHashMap<>();
+        private boolean metric;
+
+        Collector(ToolDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public void onTool(String id, float diameter) throws Exception {
+            if (!tools.containsKey(id)) {
+                tools.put(id, dictionary.intern(id, diameter, metric));
+            }
+            super.onTool(id, diameter);
+        }
+
+        @Override
+        protected List<DrillHole> resolve(String id) {
+            Tool tool = tools.get(id);
+            return tool == null ? null : drillHoles.computeIfAbsent(tool, k -> new ArrayList<>());
+        }
+
+        @Override
+        public void onDrill(float x, float y) {
+            List<DrillHole> selected = getSelected();
+            if (selected != null) {
+                selected.add(new DrillHole(x, y));
+            }
+        }
+
+        @Override
+        public void onMetric(String parameters) {
+            metric = true;
+            super.onMetric(parameters);
+        }
+    }
+}
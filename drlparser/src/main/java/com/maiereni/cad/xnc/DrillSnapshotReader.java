@@ -0,0 +1,143 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a table of drill holes from the binary snapshot format written by DrillSnapshotWriter. A file is
+ * mapped in memory and the coordinate arrays are copied out of the mapping in bulk
+ *
+ * @author Petre Maierean
+ */
+public class DrillSnapshotReader {
+    // the length of the id, an empty id, the diameter and the hole count
+    private static final int MIN_TOOL_SIZE = 2 + 4 + 4;
+
+    /**
+     * Read a snapshot file
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public DrillHoleTable read(File f) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new Exception("The snapshot at " + f.getPath() + " is too large");
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Read a snapshot from the position of a buffer up to its limit
+     *
+     * @param buffer
+     * @return
+     * @throws Exception the content is not a snapshot of a supported version
+     */
+    public DrillHoleTable read(ByteBuffer buffer) throws Exception {
+        if (buffer == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        ByteBuffer in = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < DrillSnapshotWriter.HEADER_SIZE || in.getInt() != DrillSnapshotWriter.MAGIC) {
+            throw new Exception("The content is not a drill snapshot");
+        }
+        short version = in.getShort();
+        if (version != DrillSnapshotWriter.VERSION) {
+            throw new Exception("Unsupported drill snapshot version " + version);
+        }
+        in.getShort();
+        int toolCount = in.getInt(), size = in.getInt();
+        float[] bounds = {in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat()};
+        if (toolCount < 0 || size < 0) {
+            throw new Exception("The drill snapshot is corrupted");
+        }
+        if (toolCount > in.remaining() / MIN_TOOL_SIZE) {
+            throw new Exception("The drill snapshot is truncated");
+        }
+        DrillHoleTable ret = new DrillHoleTable(1);
+        int[] holeCounts = new int[toolCount];
+        for (int i = 0; i < toolCount; i++) {
+            if (in.remaining() < 2) {
+                throw new Exception("The drill snapshot is truncated");
+            }
+            int length = in.getShort();
+            if (length < 0 || in.remaining() < length + 8) {
+                throw new Exception("The drill snapshot is truncated");
+            }
+            byte[] id = new byte[length];
+            in.get(id);
+            ret.addTool(new Tool(new String(id, StandardCharsets.UTF_8), in.getFloat()));
+            holeCounts[i] = in.getInt();
+        }
+        int padding = -in.position() & 3;
+        if (in.remaining() < padding || (in.remaining() - padding) / 12 < size) {
+            throw new Exception("The drill snapshot is truncated");
+        }
+        in.position(in.position() + padding);
+        int capacity = Math.max(size, 1);
+        float[] x = new float[capacity], y = new float[capacity];
+        int[] toolIndex = new int[capacity];
+        in.asFloatBuffer().get(x, 0, size);
+        in.position(in.position() + size * 4);
+        in.asFloatBuffer().get(y, 0, size);
+        in.position(in.position() + size * 4);
+        in.asIntBuffer().get(toolIndex, 0, size);
+        checkHoleCounts(toolIndex, size, holeCounts);
+        ret.restore(x, y, toolIndex, size, holeCounts, bounds);
+        return ret;
+    }
+
+    /**
+     * Check that the hole counts of the tools are the counts of the tool indexes, so that they add up to the
+     * size less the holes without a tool
+     */
+    private static void checkHoleCounts(int[] toolIndex, int size, int[] holeCounts) throws Exception {
+        int[] counts = new int[holeCounts.length];
+        for (int i = 0; i < size; i++) {
+            int tool = toolIndex[i];
+            if (tool < -1 || tool >= counts.length) {
+                throw new Exception("The drill snapshot is corrupted");
+            }
+            if (tool >= 0) {
+                counts[tool]++;
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != holeCounts[i]) {
+                throw new Exception("The drill snapshot is corrupted");
+            }
+        }
+    }
+}
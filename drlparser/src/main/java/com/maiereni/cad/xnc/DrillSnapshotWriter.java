@@ -0,0 +1,146 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes a table of drill holes in the binary snapshot format, so that a parsed board can be loaded again
+ * without parsing the text. The snapshot is written in little endian order and has three parts:
+ * <ul>
+ *     <li>a header: the magic number XNCS, the version, the number of tools, the number of holes and the
+ *     bounds of the holes</li>
+ *     <li>the tool table: for each tool the length of its id, the id in UTF-8, the diameter and the number of
+ *     holes, padded to a multiple of four bytes</li>
+ *     <li>the packed arrays of the X coordinates, of the Y coordinates and of the tool indexes</li>
+ * </ul>
+ * The coordinates are stored as parsed, with the offsets of the parser already applied
+ *
+ * @author Petre Maierean
+ */
+public class DrillSnapshotWriter {
+    public static final int MAGIC = 0x53434E58;
+    public static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Write a table to a file
+     *
+     * @param table
+     * @param f
+     * @throws Exception
+     */
+    public void write(DrillHoleTable table, File f) throws Exception {
+        if (table == null || f == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(table, channel);
+        }
+    }
+
+    /**
+     * Write a table to a channel
+     *
+     * @param table
+     * @param channel
+     * @throws Exception
+     */
+    public void write(DrillHoleTable table, WritableByteChannel channel) throws Exception {
+        if (table == null || channel == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        List<Tool> tools = table.getTools();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putInt(tools.size());
+        buffer.putInt(table.size());
+        buffer.putFloat(table.getMinX());
+        buffer.putFloat(table.getMaxX());
+        buffer.putFloat(table.getMinY());
+        buffer.putFloat(table.getMaxY());
+        int toolTableSize = 0;
+        for (int i = 0; i < tools.size(); i++) {
+            Tool tool = tools.get(i);
+            byte[] id = tool.getId() == null ? new byte[0] : tool.getId().getBytes(StandardCharsets.UTF_8);
+            if (id.length > Short.MAX_VALUE) {
+                throw new Exception("The id of the tool at " + i + " is too long");
+            }
+            if (buffer.remaining() < id.length + 10) {
+                flush(buffer, channel);
+            }
+            buffer.putShort((short) id.length);
+            buffer.put(id);
+            buffer.putFloat(tool.getDiameter());
+            buffer.putInt(table.getHoleCount(i));
+            toolTableSize += id.length + 10;
+        }
+        for (; toolTableSize % 4 != 0; toolTableSize++) {
+            if (!buffer.hasRemaining()) {
+                flush(buffer, channel);
+            }
+            buffer.put((byte) 0);
+        }
+        int size = table.size();
+        float[] x = table.xArray(), y = table.yArray();
+        int[] toolIndex = table.toolIndexArray();
+        for (float[] values : new float[][]{x, y}) {
+            for (int i = 0; i < size; ) {
+                if (buffer.remaining() < 4) {
+                    flush(buffer, channel);
+                }
+                int count = Math.min(size - i, buffer.remaining() / 4);
+                buffer.asFloatBuffer().put(values, i, count);
+                buffer.position(buffer.position() + count * 4);
+                i += count;
+            }
+        }
+        for (int i = 0; i < size; ) {
+            if (buffer.remaining() < 4) {
+                flush(buffer, channel);
+            }
+            int count = Math.min(size - i, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(toolIndex, i, count);
+            buffer.position(buffer.position() + count * 4);
+            i += count;
+        }
+        flush(buffer, channel);
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
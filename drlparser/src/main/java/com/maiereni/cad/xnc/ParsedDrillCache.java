@@ -0,0 +1,246 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of parsed drill files in front of a XNCParser. The entries are keyed by the SHA-256 hash of the
+ * content of the file and of the offsets of the parser, so a file that arrives again under another name is
+ * not parsed again. The tables are kept in a memory tier bounded by their estimated size, with the least
+ * recently used ones evicted first, and optionally in a directory as binary snapshots. The tables returned
+ * are shared between the callers and must not be modified
+ *
+ * @author Petre Maierean
+ */
+public class ParsedDrillCache {
+    private static final Logger logger = LogManager.getLogger(ParsedDrillCache.class);
+    private static final String SNAPSHOT_EXTENSION = ".xncs";
+    private static final long BYTES_PER_HOLE = 12;
+    private static final long BYTES_PER_TOOL = 64;
+    private final XNCParser parser;
+    private final long maxBytes;
+    private final File directory;
+    private final LinkedHashMap<String, DrillHoleTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong(), diskHits = new AtomicLong(), misses = new AtomicLong(),
+            evictions = new AtomicLong();
+    private long bytes;
+
+    public ParsedDrillCache(XNCParser parser, long maxBytes) throws Exception {
+        this(parser, maxBytes, null);
+    }
+
+    /**
+     * Create a cache
+     *
+     * @param parser the parser of the files which are not in the cache
+     * @param maxBytes the estimated size of the tables kept in memory
+     * @param directory the directory of the snapshots, or null for a memory only cache
+     * @throws Exception the directory cannot be created
+     */
+    public ParsedDrillCache(XNCParser parser, long maxBytes, File directory) throws Exception {
+        if (parser == null) {
+            throw new Exception("The parser cannot be null");
+        }
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new Exception("Cannot create the directory " + directory.getPath());
+        }
+        this.parser = parser;
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * Get the table of drill holes of a file, parsing the file only if its content is not in the cache
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public DrillHoleTable get(File f) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        String key = getKey(f);
+        DrillHoleTable ret = getFromMemory(key);
+        if (ret != null) {
+            hits.incrementAndGet();
+        } else {
+            File snapshot = directory == null ? null : new File(directory, key + SNAPSHOT_EXTENSION);
+            if (snapshot != null && snapshot.isFile()) {
+                ret = readSnapshot(snapshot);
+            }
+            if (ret != null) {
+                diskHits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                ret = parser.parseTable(f);
+                if (snapshot != null) {
+                    writeSnapshot(ret, snapshot);
+                }
+            }
+            putInMemory(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Get the number of lookups answered by the memory tier
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups answered by the disk tier
+     *
+     * @return
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Get the number of lookups that needed a parse
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of tables evicted from the memory tier
+     *
+     * @return
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the estimated size of the tables kept in memory
+     *
+     * @return
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Remove all the tables from the memory tier. The snapshots are kept
+     */
+    public synchronized void clear() {
+        tables.clear();
+        bytes = 0;
+    }
+
+    private synchronized DrillHoleTable getFromMemory(String key) {
+        return tables.get(key);
+    }
+
+    private synchronized void putInMemory(String key, DrillHoleTable table) {
+        DrillHoleTable previous = tables.put(key, table);
+        if (previous != null) {
+            bytes -= estimateSize(previous);
+        }
+        bytes += estimateSize(table);
+        Iterator<Map.Entry<String, DrillHoleTable>> iterator = tables.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, DrillHoleTable> eldest = iterator.next();
+            if (eldest.getValue() != table) {
+                bytes -= estimateSize(eldest.getValue());
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static long estimateSize(DrillHoleTable table) {
+        return table.size() * BYTES_PER_HOLE + table.getTools().size() * BYTES_PER_TOOL;
+    }
+
+    private DrillHoleTable readSnapshot(File snapshot) {
+        DrillHoleTable ret = null;
+        try {
+            ret = new DrillSnapshotReader().read(snapshot);
+        } catch (Exception e) {
+            logger.error("Cannot read the snapshot " + snapshot.getPath(), e);
+        }
+        return ret;
+    }
+
+    /**
+     * Write the snapshot to a temporary file first, so that a concurrent reader never sees a partial snapshot
+     */
+    private void writeSnapshot(DrillHoleTable table, File snapshot) {
+        File temp = null;
+        try {
+            temp = File.createTempFile("snapshot", ".tmp", directory);
+            new DrillSnapshotWriter().write(table, temp);
+            Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (Exception e) {
+            logger.error("Cannot write the snapshot " + snapshot.getPath(), e);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private String getKey(File f) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        buffer.putFloat(parser.getOffsetX() == null ? 0f : parser.getOffsetX());
+        buffer.putFloat(parser.getOffsetY() == null ? 0f : parser.getOffsetY());
+        buffer.flip();
+        digest.update(buffer);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -22,6 +22,7 @@ import com.maiereni.cad.xnc.bo.Tool;
 import java.io.StringWriter;
 import java.text.NumberFormat;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Petre Maierean
@@ -30,6 +31,7 @@ public class RN1PrinterStatus {
     public static final NumberFormat NF = NumberFormat.getNumberInstance();
     private float maxX, minX, maxY, minY, currentX, currentY;
     private List<Tool> tools;
+    private Map<String, Integer> holeCounts;
 
     public float getMaxX() {
         return maxX;
@@ -87,6 +89,25 @@ public class RN1PrinterStatus {
         this.tools = tools;
     }
 
+    public Map<String, Integer> getHoleCounts() {
+        return holeCounts;
+    }
+
+    public void setHoleCounts(Map<String, Integer> holeCounts) {
+        this.holeCounts = holeCounts;
+    }
+
+    /**
+     * Get the number of holes drilled with a tool
+     *
+     * @param toolId
+     * @return the count or 0 if the tool has no hole
+     */
+    public int getHoleCount(String toolId) {
+        Integer ret = holeCounts == null ? null : holeCounts.get(toolId);
+        return ret == null ? 0 : ret;
+    }
+
     public String toString() {
         StringWriter sw = new StringWriter();
         sw.write("X: ");
@@ -0,0 +1,136 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import com.maiereni.cad.xnc.bo.Move;
+import com.maiereni.cad.xnc.bo.RepeatHole;
+import com.maiereni.cad.xnc.bo.SelectTool;
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Builds a RN1 Printer status while the tokens are being read: the bounds of the holes and of the moves, the
+ * tool definitions and the number of holes of each tool. A hole is counted for the tool selected last, as
+ * XNCSelectionHandler tracks it. The collector can be handed to the parser as a handler
+ *
+ * @author Petre Maierean
+ */
+public class RN1PrinterStatusCollector extends XNCSelectionHandler<String> {
+    private final RN1PrinterStatus status = new RN1PrinterStatus();
+
+    /**
+     * Update the status with the next token
+     *
+     * @param token
+     */
+    public void accept(Token token) {
+        if (token instanceof DrillHole) {
+            DrillHole drillHole = (DrillHole) token;
+            onDrill(drillHole.getX(), drillHole.getY());
+        } else if (token instanceof RepeatHole) {
+            RepeatHole repeatHole = (RepeatHole) token;
+            onRepeat(repeatHole.getX(), repeatHole.getY(), repeatHole.getCount(), repeatHole.getStepX(),
+                    repeatHole.getStepY());
+        } else if (token instanceof SelectTool) {
+            onSelect(((SelectTool) token).getId());
+        } else if (token instanceof Move) {
+            Move move = (Move) token;
+            onMove(move.getX(), move.getY());
+        } else if (token instanceof Tool) {
+            addTool((Tool) token);
+        } else {
+            setSelected(null);
+        }
+    }
+
+    @Override
+    public void onDrill(float x, float y) {
+        bounds(x, y);
+        if (getSelected() != null) {
+            status.getHoleCounts().merge(getSelected(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * The holes of a repeat are on a line, so only the first and the last one can widen the bounds
+     */
+    @Override
+    public void onRepeat(float x, float y, int count, float stepX, float stepY) {
+        if (count > 0) {
+            bounds(RepeatHole.position(x, stepX, 1), RepeatHole.position(y, stepY, 1));
+            bounds(RepeatHole.position(x, stepX, count), RepeatHole.position(y, stepY, count));
+            if (getSelected() != null) {
+                status.getHoleCounts().merge(getSelected(), count, Integer::sum);
+            }
+        }
+    }
+
+    @Override
+    public void onMove(float x, float y) {
+        bounds(x, y);
+        super.onMove(x, y);
+    }
+
+    @Override
+    protected String resolve(String id) {
+        if (status.getHoleCounts() == null) {
+            status.setHoleCounts(new LinkedHashMap<>());
+        }
+        return id;
+    }
+
+    @Override
+    public void onTool(String id, float diameter) {
+        addTool(new Tool(id, diameter));
+    }
+
+    /**
+     * Get the status collected so far
+     *
+     * @return
+     */
+    public RN1PrinterStatus getStatus() {
+        return status;
+    }
+
+    private void addTool(Tool tool) {
+        if (status.getTools() == null) {
+            status.setTools(new ArrayList<>());
+        }
+        status.getTools().add(tool);
+        setSelected(null);
+    }
+
+    private void bounds(float x, float y) {
+        if (x > status.getMaxX()) {
+            status.setMaxX(x);
+        }
+        if (x < status.getMinX()) {
+            status.setMinX(x);
+        }
+        if (y > status.getMaxY()) {
+            status.setMaxY(y);
+        }
+        if (y < status.getMinY()) {
+            status.setMinY(y);
+        }
+    }
+}
@@ -17,12 +17,10 @@
  */
 package com.maiereni.cad.xnc;
 
-import com.maiereni.cad.xnc.bo.DrillHole;
-import com.maiereni.cad.xnc.bo.Move;
-import com.maiereni.cad.xnc.bo.Tool;
-
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Petre Maierean
@@ -45,41 +43,43 @@ public class RN1PrinterStatusFactory {
      * @return
      */
     public RN1PrinterStatus getInitialized(List<Token> tokens) {
-        RN1PrinterStatus ret = new RN1PrinterStatus();
-        float maxX = 0, minX = 0, maxY = 0, minY = 0;
+        RN1PrinterStatusCollector ret = new RN1PrinterStatusCollector();
         if (tokens != null) {
-            List<Tool> tools = new ArrayList<>();
             for (Token token : tokens) {
-                if (token instanceof DrillHole) {
-                    DrillHole drillHole = (DrillHole) token;
-                    update(ret, drillHole.getX(), drillHole.getY());
-                } else if (token instanceof Move) {
-                    Move move = (Move) token;
-                    update(ret, move.getX(), move.getY());
-                } else if (token instanceof Tool) {
-                    Tool tool = (Tool) token;
-                    tools.add(tool);
-                }
-            }
-            if (!tools.isEmpty()) {
-                ret.setTools(tools);
+                ret.accept(token);
             }
         }
-        return ret;
+        return ret.getStatus();
     }
 
-    private void update(RN1PrinterStatus status, float x, float y) {
-        if (x > status.getMaxX()) {
-            status.setMaxX(x);
-        }
-        if (x < status.getMinX()) {
-            status.setMinX(x);
-        }
-        if (y > status.getMaxY()) {
-            status.setMaxY(y);
-        }
-        if (y < status.getMinY()) {
-            status.setMinY(y);
+    /**
+     * Gets a RN1 Printer status for a table of drill holes from the bounds and the counts kept by the table.
+     * The bounds only cover the drill holes, since the table does not keep the moves
+     *
+     * @param table
+     * @return
+     */
+    public RN1PrinterStatus getInitialized(DrillHoleTable table) {
+        RN1PrinterStatus ret = new RN1PrinterStatus();
+        if (table != null) {
+            if (table.size() > 0) {
+                ret.setMinX(Math.min(0f, table.getMinX()));
+                ret.setMaxX(Math.max(0f, table.getMaxX()));
+                ret.setMinY(Math.min(0f, table.getMinY()));
+                ret.setMaxY(Math.max(0f, table.getMaxY()));
+            }
+            if (!table.getTools().isEmpty()) {
+                ret.setTools(new ArrayList<>(table.getTools()));
+                Map<String, Integer> holeCounts = new LinkedHashMap<>();
+                for (int i = 0; i < table.getTools().size(); i++) {
+                    int count = table.getHoleCount(i);
+                    if (count > 0) {
+                        holeCounts.merge(table.getTools().get(i).getId(), count, Integer::sum);
+                    }
+                }
+                ret.setHoleCounts(holeCounts);
+            }
         }
+        return ret;
     }
 }
@@ -0,0 +1,99 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A dictionary of tools keyed by diameter, which can be shared by threads. The first tool of a diameter is the
+ * one kept, so that the tools of several files with the same diameter resolve to a single instance, whatever
+ * their number in each file. When the files are parsed concurrently, the number of the kept tool is the one of
+ * the file which got to it first. The diameters are compared as they are written, so all the tools must be in
+ * the same units: the first tool sets the units of the dictionary, metric if its file declares METRIC and
+ * unspecified otherwise, and a tool in the other units is rejected
+ *
+ * @author Petre Maierean
+ */
+public class ToolDictionary {
+    private final ConcurrentMap<Float, Tool> tools = new ConcurrentHashMap<>();
+    private final AtomicReference<Boolean> metric = new AtomicReference<>();
+
+    /**
+     * Get the tool of a diameter, adding it if there is none yet
+     *
+     * @param id the id of the tool to add
+     * @param diameter
+     * @param metric true if the file of the tool declares METRIC units
+     * @return the tool kept for the diameter
+     * @throws Exception the tools of the dictionary are in other units
+     */
+    public Tool intern(String id, float diameter, boolean metric) throws Exception {
+        this.metric.compareAndSet(null, metric);
+        if (this.metric.get() != metric) {
+            throw new Exception("Cannot add the tool " + id + " in " + getUnits(metric)
+                    + " units to tools in " + getUnits(!metric) + " units");
+        }
+        // -0.0 and 0.0 are the same diameter
+        return tools.computeIfAbsent(diameter + 0f, d -> new Tool(id, d));
+    }
+
+    /**
+     * Get the tool of a diameter
+     *
+     * @param diameter
+     * @return the tool or null if there is none
+     */
+    public Tool get(float diameter) {
+        return tools.get(diameter + 0f);
+    }
+
+    public int size() {
+        return tools.size();
+    }
+
+    /**
+     * Check if the tools are in metric units
+     *
+     * @return true if the files of the tools declare METRIC units, false if they do not or there is no tool yet
+     */
+    public boolean isMetric() {
+        return Boolean.TRUE.equals(metric.get());
+    }
+
+    /**
+     * Get the tools by increasing diameter
+     *
+     * @return
+     */
+    public List<Tool> getTools() {
+        List<Tool> ret = new ArrayList<>(tools.values());
+        ret.sort(Comparator.comparingDouble(Tool::getDiameter));
+        return ret;
+    }
+
+    private static String getUnits(boolean metric) {
+        return metric ? "metric" : "unspecified";
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Parses compressed XNC content as it is decompressed, without temporary files. A stream is decompressed if
+ * it starts with the gzip signature. The drill entries of a zip archive, recognized by their extension, are
+ * parsed in parallel on a fork join pool, each by its own parser. The entries of an archive on disk are read
+ * directly from it. The ones of an archive received as a stream are read into memory and parsed while the next
+ * ones are read, with at most twice the parallelism of the pool read ahead, so that the memory does not grow
+ * with the archive. The names of the drill entries must be unique
+ *
+ * @author Petre Maierean
+ */
+public class XNCArchiveParser {
+    public static final Set<String> DRILL_EXTENSIONS = Set.of(".drl", ".xnc", ".drd", ".exc");
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private final Supplier<XNCParser> parsers;
+    private final ForkJoinPool pool;
+
+    public XNCArchiveParser(Supplier<XNCParser> parsers) {
+        this(parsers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a parser
+     *
+     * @param parsers creates a parser for each entry
+     * @param pool the pool to parse the entries on
+     */
+    public XNCArchiveParser(Supplier<XNCParser> parsers, ForkJoinPool pool) {
+        this.parsers = parsers;
+        this.pool = pool;
+    }
+
+    /**
+     * Open a reader of XNC content which is decompressed on the fly if it is gzip compressed. The content is
+     * decoded as ISO-8859-1, which maps every byte to a character, so that the result does not depend on the
+     * platform charset and a stray byte in a comment cannot fail the parse
+     *
+     * @param is
+     * @return
+     * @throws Exception
+     */
+    public static Reader openReader(InputStream is) throws Exception {
+        if (is == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        BufferedInputStream bis = new BufferedInputStream(is, 1 << 16);
+        bis.mark(2);
+        int magic = bis.read() | (bis.read() << 8);
+        bis.reset();
+        InputStream content = magic == GZIP_MAGIC ? new GZIPInputStream(bis, 1 << 16) : bis;
+        return new BufferedReader(new InputStreamReader(content, StandardCharsets.ISO_8859_1), 1 << 16);
+    }
+
+    /**
+     * Check if an entry of an archive is a drill file, by its extension. A drill file may be gzip compressed
+     * inside the archive
+     *
+     * @param name
+     * @return
+     */
+    public static boolean isDrillEntry(String name) {
+        boolean ret = false;
+        if (name.toLowerCase(Locale.ROOT).endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot > 0 && !name.endsWith("/")) {
+            ret = DRILL_EXTENSIONS.contains(name.substring(dot).toLowerCase(Locale.ROOT));
+        }
+        return ret;
+    }
+
+    /**
+     * Parse XNC content from a stream, which may be gzip compressed
+     *
+     * @param is
+     * @return
+     * @throws Exception
+     */
+    public XNCParseResult parse(InputStream is) throws Exception {
+        try (Reader reader = openReader(is)) {
+            return parsers.get().parseWithStatus(reader);
+        }
+    }
+
+    /**
+     * Parse the drill entries of a zip archive on disk
+     *
+     * @param f
+     * @return the results by the name of the entry, in the order of the archive
+     * @throws Exception an entry cannot be parsed
+     */
+    public Map<String, XNCParseResult> parseZip(File f) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        try (ZipFile zipFile = new ZipFile(f)) {
+            Map<String, EntryTask> tasks = new LinkedHashMap<>();
+            try {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && isDrillEntry(entry.getName())) {
+                        submit(tasks, entry.getName(), () -> zipFile.getInputStream(entry));
+                    }
+                }
+            } catch (Exception e) {
+                cancel(tasks);
+                throw e;
+            }
+            return collect(tasks);
+        }
+    }
+
+    /**
+     * Parse the drill entries of a zip archive read from a stream
+     *
+     * @param is
+     * @return the results by the name of the entry, in the order of the archive
+     * @throws Exception an entry cannot be parsed
+     */
+    public Map<String, XNCParseResult> parseZip(InputStream is) throws Exception {
+        if (is == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        Map<String, EntryTask> tasks = new LinkedHashMap<>();
+        Deque<EntryTask> pending = new ArrayDeque<>();
+        int maxPending = 2 * pool.getParallelism();
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(is, 1 << 16))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!entry.isDirectory() && isDrillEntry(entry.getName())) {
+                    byte[] content = zis.readAllBytes();
+                    while (pending.size() >= maxPending) {
+                        pending.poll().quietlyJoin();
+                    }
+                    pending.add(submit(tasks, entry.getName(), () -> new ByteArrayInputStream(content)));
+                }
+            }
+        } catch (Exception e) {
+            cancel(tasks);
+            throw e;
+        }
+        return collect(tasks);
+    }
+
+    private EntryTask submit(Map<String, EntryTask> tasks, String name, EntryTask.Opener opener) throws Exception {
+        if (tasks.containsKey(name)) {
+            throw new Exception("The archive has more than one entry named " + name);
+        }
+        EntryTask ret = new EntryTask(opener);
+        tasks.put(name, ret);
+        pool.execute(ret);
+        return ret;
+    }
+
+    private static void cancel(Map<String, EntryTask> tasks) {
+        for (EntryTask task : tasks.values()) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Wait for the tasks in the order of the archive. The failure is taken from the task rather than from a
+     * join, which would re-create the exception of another thread with its class name in the message
+     *
+     * @param tasks
+     * @return the results by the name of the entry
+     * @throws Exception the first entry which could not be parsed
+     */
+    private static Map<String, XNCParseResult> collect(Map<String, EntryTask> tasks) throws Exception {
+        Map<String, XNCParseResult> ret = new LinkedHashMap<>();
+        Exception failure = null;
+        for (Map.Entry<String, EntryTask> task : tasks.entrySet()) {
+            task.getValue().quietlyJoin();
+            Exception e = task.getValue().failure;
+            if (e != null) {
+                if (failure == null) {
+                    failure = new Exception("Cannot parse the entry " + task.getKey() + ": " + e.getMessage(), e);
+                }
+            } else {
+                ret.put(task.getKey(), task.getValue().result);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return ret;
+    }
+
+    /**
+     * Parses an entry. The failure is kept, to be reported with the name of the entry. The opener is released
+     * once the entry is parsed, together with the content it holds
+     */
+    private class EntryTask extends RecursiveAction {
+        private Opener opener;
+        private XNCParseResult result;
+        private Exception failure;
+
+        interface Opener {
+            InputStream open() throws Exception;
+        }
+
+        EntryTask(Opener opener) {
+            this.opener = opener;
+        }
+
+        @Override
+        protected void compute() {
+            try (InputStream is = opener.open()) {
+                result = parse(is);
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                opener = null;
+            }
+        }
+    }
+}
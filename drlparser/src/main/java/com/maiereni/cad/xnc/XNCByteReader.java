@@ -0,0 +1,193 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Reads the lines of XNC content held as ASCII bytes in a buffer. The lines are recognized with the same
+ * terminators as BufferedReader.readLine: line feed, carriage return or carriage return followed by line feed.
+ * The lines are handed to a consumer in place, so no String is created for them. A line that cannot be
+ * interpreted either fails the read or, in lenient mode, is recorded in the diagnostics and skipped
+ *
+ * @author Petre Maierean
+ */
+public class XNCByteReader {
+    private final LineConsumer consumer;
+    private final AsciiLine line = new AsciiLine();
+    private final XNCDiagnostics diagnostics;
+    private XNCLineIndex lineIndex;
+    private XNCLineScanner scanner = XNCLineScanner.getDefault();
+    private int lineNumber;
+    private long offset;
+
+    /**
+     * Create a reader that adds the tokens to a list
+     *
+     * @param lexer
+     * @param tokens
+     */
+    public XNCByteReader(XNCLexer lexer, List<Token> tokens) {
+        this(tokensConsumer(lexer, tokens), 0);
+    }
+
+    /**
+     * Create a reader
+     *
+     * @param consumer
+     * @param lineNumber the number of lines which precede the content to read
+     */
+    public XNCByteReader(LineConsumer consumer, int lineNumber) {
+        this(consumer, lineNumber, null);
+    }
+
+    /**
+     * Create a reader which records the lines that cannot be interpreted and goes on, if the diagnostics are
+     * not null
+     *
+     * @param consumer
+     * @param lineNumber the number of lines which precede the content to read
+     * @param diagnostics
+     */
+    public XNCByteReader(LineConsumer consumer, int lineNumber, XNCDiagnostics diagnostics) {
+        this.consumer = consumer;
+        this.lineNumber = lineNumber;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * A consumer of the lines that are not comments
+     */
+    public interface LineConsumer {
+        /**
+         * Interpret a line. The line is only valid for the duration of the call
+         *
+         * @param line
+         * @return false if the line cannot be interpreted
+         * @throws Exception
+         */
+        boolean accept(CharSequence line) throws Exception;
+    }
+
+    /**
+     * Get a consumer that lexes the lines into a list of tokens
+     *
+     * @param lexer
+     * @param tokens
+     * @return
+     */
+    public static LineConsumer tokensConsumer(XNCLexer lexer, List<Token> tokens) {
+        return handlerConsumer(lexer, new XNCTokenListHandler(tokens));
+    }
+
+    /**
+     * Get a consumer that lexes the lines and passes their content to a handler
+     *
+     * @param lexer
+     * @param handler
+     * @return
+     */
+    public static LineConsumer handlerConsumer(XNCLexer lexer, XNCHandler handler) {
+        return line -> lexer.lex(line, handler) != null;
+    }
+
+    /**
+     * Read the lines found in a range of a buffer. A line at the end of the range without a terminator is only
+     * read if the range is complete, which means that it ends where the content ends
+     *
+     * @param buffer
+     * @param from the position of the first byte of a line
+     * @param to the position after the last byte to read
+     * @param complete
+     * @return the position after the last line read
+     * @throws Exception a line cannot be interpreted and there are no diagnostics
+     */
+    public int read(ByteBuffer buffer, int from, int to, boolean complete) throws Exception {
+        int start = from;
+        while (start < to) {
+            int end = scanner.indexOfTerminator(buffer, start, to);
+            byte b = end < to ? buffer.get(end) : 0;
+            int next = end + 1;
+            if (end == to) {
+                if (!complete) {
+                    break;
+                }
+                next = to;
+            } else if (b == '\r') {
+                if (next < to) {
+                    if (buffer.get(next) == '\n') {
+                        next++;
+                    }
+                } else if (!complete) {
+                    // the line feed may follow in the next range
+                    break;
+                }
+            }
+            lineNumber++;
+            if (lineIndex != null) {
+                lineIndex.add(offset + start);
+            }
+            if (end == start || buffer.get(start) != ';') {
+                line.set(buffer, start, end - start);
+                if (!consumer.accept(line)) {
+                    XNCDiagnostics.reject(diagnostics, line, lineNumber, offset + start);
+                }
+            }
+            start = next;
+        }
+        return start;
+    }
+
+    /**
+     * Set the position in the content of the first byte of the buffer, which is used for the offsets of the
+     * diagnostics
+     *
+     * @param offset
+     */
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Add the start of every line read, comments included, to an index
+     *
+     * @param lineIndex
+     */
+    public void setLineIndex(XNCLineIndex lineIndex) {
+        this.lineIndex = lineIndex;
+    }
+
+    /**
+     * Set the scanner which finds the ends of the lines
+     *
+     * @param scanner
+     */
+    public void setScanner(XNCLineScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Get the number of lines read so far, including the lines preceding the content
+     *
+     * @return
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of an incremental parse: the tokens of the new content and the drill holes which differ from
+ * the previous content. A hole is identified by the tool it is drilled with and by its coordinates
+ *
+ * @author Petre Maierean
+ */
+public class XNCDelta {
+    private final List<Token> tokens;
+    private final List<Change> added = new ArrayList<>(), removed = new ArrayList<>(), moved = new ArrayList<>();
+    private final int relexedLines;
+
+    public XNCDelta(List<Token> tokens, int relexedLines) {
+        this.tokens = tokens;
+        this.relexedLines = relexedLines;
+    }
+
+    /**
+     * A drill hole that has been added, removed or moved. The from hole is null for an added hole and the to
+     * hole is null for a removed hole
+     */
+    public static class Change {
+        private final String toolId;
+        private final DrillHole from, to;
+
+        public Change(String toolId, DrillHole from, DrillHole to) {
+            this.toolId = toolId;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Get the id of the tool, or null for a hole drilled without a selected tool
+         *
+         * @return
+         */
+        public String getToolId() {
+            return toolId;
+        }
+
+        public DrillHole getFrom() {
+            return from;
+        }
+
+        public DrillHole getTo() {
+            return to;
+        }
+
+        @Override
+        public String toString() {
+            return "T" + toolId + " " + toString(from) + " > " + toString(to);
+        }
+
+        private static String toString(DrillHole drillHole) {
+            return drillHole == null ? "-" : "X" + drillHole.getX() + "Y" + drillHole.getY();
+        }
+    }
+
+    /**
+     * Get the tokens of the new content
+     *
+     * @return
+     */
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    public List<Change> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    public List<Change> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    public List<Change> getMoved() {
+        return Collections.unmodifiableList(moved);
+    }
+
+    /**
+     * Get the number of lines which had to be lexed again
+     *
+     * @return
+     */
+    public int getRelexedLines() {
+        return relexedLines;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && moved.isEmpty();
+    }
+
+    void add(Change change) {
+        if (change.from == null) {
+            added.add(change);
+        } else if (change.to == null) {
+            removed.add(change);
+        } else {
+            moved.add(change);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+/**
+ * A line of XNC content that could not be interpreted
+ *
+ * @author Petre Maierean
+ */
+public class XNCDiagnostic {
+    private final int lineNumber;
+    private final long offset;
+    private final String line;
+    private final String reason;
+
+    public XNCDiagnostic(int lineNumber, long offset, String line, String reason) {
+        this.lineNumber = lineNumber;
+        this.offset = offset;
+        this.line = line;
+        this.reason = reason;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get the position in bytes of the start of the line in the content
+     *
+     * @return the offset or -1 if the content has been read as characters
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "Line " + lineNumber + (offset >= 0 ? " at " + offset : "") + ": " + reason + " '" + line + "'";
+    }
+}
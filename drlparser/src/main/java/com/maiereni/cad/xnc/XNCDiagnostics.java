@@ -0,0 +1,137 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the lines that could not be interpreted when a parser runs in lenient mode. Only the first
+ * diagnostics up to the limit are kept, the others are only counted. No exception is created for a rejected
+ * line. A collector must not be shared between parsers running at the same time
+ *
+ * @author Petre Maierean
+ */
+public class XNCDiagnostics {
+    public static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LINE_LENGTH = 80;
+    private final int limit;
+    private final List<XNCDiagnostic> diagnostics = new ArrayList<>();
+    private int count;
+
+    public XNCDiagnostics() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Create a collector
+     *
+     * @param limit the number of diagnostics to keep
+     */
+    public XNCDiagnostics(int limit) {
+        this.limit = Math.max(limit, 0);
+    }
+
+    /**
+     * Record a line that could not be interpreted
+     *
+     * @param lineNumber
+     * @param offset the position in bytes of the line, or -1 if unknown
+     * @param line
+     */
+    public void add(int lineNumber, long offset, CharSequence line) {
+        if (diagnostics.size() < limit) {
+            String text = line.length() > MAX_LINE_LENGTH
+                    ? line.subSequence(0, MAX_LINE_LENGTH) + "..." : line.toString();
+            diagnostics.add(new XNCDiagnostic(lineNumber, offset, text, XNCLexer.diagnose(line)));
+        }
+        count++;
+    }
+
+    /**
+     * Add the diagnostics of a part of the content which has been parsed on its own
+     *
+     * @param other
+     * @param lines the number of lines which precede the part
+     */
+    public void addAll(XNCDiagnostics other, int lines) {
+        for (XNCDiagnostic diagnostic : other.diagnostics) {
+            if (diagnostics.size() < limit) {
+                diagnostics.add(new XNCDiagnostic(diagnostic.getLineNumber() + lines, diagnostic.getOffset(),
+                        diagnostic.getLine(), diagnostic.getReason()));
+            }
+        }
+        count += other.count;
+    }
+
+    public List<XNCDiagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    /**
+     * Get the number of lines rejected, including the ones which are not kept
+     *
+     * @return
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Check if some diagnostics have been dropped because of the limit
+     *
+     * @return
+     */
+    public boolean isTruncated() {
+        return count > diagnostics.size();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Either record a line that could not be interpreted, or throw if there is no collector
+     */
+    static void reject(XNCDiagnostics diagnostics, CharSequence line, int lineNumber, long offset) throws Exception {
+        if (diagnostics == null) {
+            throw new Exception("Cannot interpret token '" + line + "' at line " + lineNumber);
+        }
+        diagnostics.add(lineNumber, offset, line);
+    }
+
+    @Override
+    public String toString() {
+        StringWriter sw = new StringWriter();
+        sw.write(count + " lines could not be interpreted");
+        for (XNCDiagnostic diagnostic : diagnostics) {
+            sw.write("\n");
+            sw.write(diagnostic.toString());
+        }
+        if (isTruncated()) {
+            sw.write("\n...");
+        }
+        return sw.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.RepeatHole;
+
+/**
+ * Receives the content of a XNC file as it is parsed, one call per instruction. The coordinates are passed as
+ * primitives, so a handler can keep the drill holes in its own structures without a token being created for
+ * each of them. All the methods do nothing by default
+ *
+ * @author Petre Maierean
+ */
+public interface XNCHandler {
+
+    default void onStartHeader() throws Exception {
+    }
+
+    /**
+     * @param parameters the text that follows FMAT
+     * @throws Exception
+     */
+    default void onFormat(String parameters) throws Exception {
+    }
+
+    /**
+     * @param parameters the text that follows METRIC and a comma, or null
+     * @throws Exception
+     */
+    default void onMetric(String parameters) throws Exception {
+    }
+
+    default void onTool(String id, float diameter) throws Exception {
+    }
+
+    default void onHeaderEnd() throws Exception {
+    }
+
+    default void onDrillMode(String mode) throws Exception {
+    }
+
+    default void onSelect(String id) throws Exception {
+    }
+
+    default void onDrill(float x, float y) throws Exception {
+    }
+
+    default void onMove(float x, float y) throws Exception {
+    }
+
+    /**
+     * Receives a repeat of the previous hole. The holes are passed to onDrill by default, a handler which keeps
+     * the pattern instead can override it
+     *
+     * @param x the coordinate of the hole which is repeated
+     * @param y
+     * @param count
+     * @param stepX
+     * @param stepY
+     * @throws Exception
+     */
+    default void onRepeat(float x, float y, int count, float stepX, float stepY) throws Exception {
+        for (int i = 1; i <= count; i++) {
+            onDrill(RepeatHole.position(x, stepX, i), RepeatHole.position(y, stepY, i));
+        }
+    }
+
+    default void onPlunge() throws Exception {
+    }
+
+    default void onLift() throws Exception {
+    }
+
+    default void onEndFile() throws Exception {
+    }
+}
@@ -0,0 +1,428 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import com.maiereni.cad.xnc.bo.MetricUnits;
+import com.maiereni.cad.xnc.bo.RepeatHole;
+import com.maiereni.cad.xnc.bo.SelectTool;
+
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Parses successive versions of the same XNC content, lexing again only the lines which changed. The parser
+ * keeps a 64 bit hash and the token of every line of the previous version. The lines which the two versions
+ * share at the start and at the end are taken over, and a line in between is only lexed if no line of the
+ * previous version in between had the same hash and was lexed with the same coordinate format. A change of
+ * the METRIC units leads to a full parse, since it changes how all the lines that follow it are decoded. The
+ * tokens taken over are shared between the results, so they must not be modified. An instance must not be
+ * shared between threads
+ *
+ * @author Petre Maierean
+ */
+public class XNCIncrementalParser {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final float offsetX, offsetY;
+    private long[] hashes = new long[0];
+    private Token[] lineTokens = new Token[0];
+    private boolean parsed;
+
+    public XNCIncrementalParser() {
+        this(0f, 0f);
+    }
+
+    public XNCIncrementalParser(float offsetX, float offsetY) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * Parse the next version of the content of a reader
+     *
+     * @param reader
+     * @return
+     * @throws Exception
+     */
+    public XNCDelta parse(Reader reader) throws Exception {
+        if (reader == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        for (int read; (read = reader.read(buffer)) >= 0; ) {
+            sb.append(buffer, 0, read);
+        }
+        return parse(sb.toString());
+    }
+
+    /**
+     * Parse the next version of the content. The first version is parsed in full and all its holes are added.
+     * The state of the parser is only changed if the content can be parsed
+     *
+     * @param content
+     * @return the tokens of the content and the holes which differ from the previous version
+     * @throws Exception a line cannot be interpreted
+     */
+    public XNCDelta parse(String content) throws Exception {
+        if (content == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        int[] starts = splitLines(content);
+        int count = starts.length - 1;
+        long[] newHashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            newHashes[i] = hash(content, starts[i], lineEnd(content, starts[i], starts[i + 1]));
+        }
+        int oldCount = hashes.length;
+        int prefix = 0, suffix = 0;
+        if (parsed) {
+            int min = Math.min(count, oldCount);
+            while (prefix < min && hashes[prefix] == newHashes[prefix]) {
+                prefix++;
+            }
+            while (suffix < min - prefix && hashes[oldCount - 1 - suffix] == newHashes[count - 1 - suffix]) {
+                suffix++;
+            }
+        }
+        boolean full = !parsed || changesUnits(content, starts, newHashes, prefix, count - suffix, oldCount - suffix);
+        if (full) {
+            prefix = 0;
+            suffix = 0;
+        }
+        // the holes which follow the changed lines may be drilled with another tool or repeat another hole now
+        int oldEnd = oldCount - suffix, newEnd = count - suffix;
+        while (!full && oldEnd < oldCount && isHoleOrComment(lineTokens[oldEnd])) {
+            oldEnd++;
+            newEnd++;
+        }
+        Token[] newTokens = new Token[count];
+        System.arraycopy(lineTokens, 0, newTokens, 0, prefix);
+        System.arraycopy(lineTokens, oldCount - suffix, newTokens, count - suffix, suffix);
+        // the lines of the previous version which can be taken over, with the format they have been lexed with
+        CoordinateFormat format = getFormat(prefix);
+        Map<Long, Integer> reusable = new HashMap<>();
+        CoordinateFormat[] formats = new CoordinateFormat[full ? 0 : oldCount - suffix - prefix];
+        for (int i = prefix; !full && i < oldCount - suffix; i++) {
+            if (lineTokens[i] instanceof MetricUnits) {
+                format = CoordinateFormat.fromMetric(((MetricUnits) lineTokens[i]).getParameters());
+            }
+            reusable.put(hashes[i], i);
+            formats[i - prefix] = format;
+        }
+        XNCLexer lexer = new XNCLexer(offsetX, offsetY);
+        lexer.setFormat(getFormat(prefix));
+        float[] last = getLastHole(lineTokens, prefix);
+        if (last != null) {
+            lexer.setLastHole(last[0], last[1]);
+        }
+        int relexed = 0;
+        for (int i = prefix; i < count - suffix; i++) {
+            int end = lineEnd(content, starts[i], starts[i + 1]);
+            if (end > starts[i] && content.charAt(starts[i]) == ';') {
+                continue;
+            }
+            Integer reused = reusable.get(newHashes[i]);
+            Token token = null;
+            if (reused != null && formats[reused - prefix].equals(lexer.getFormat())) {
+                token = lineTokens[reused];
+            }
+            if (token == null) {
+                CharSequence line = content.subSequence(starts[i], end);
+                token = lexer.nextToken(line);
+                relexed++;
+                if (token == null) {
+                    throw new Exception("Cannot interpret token '" + line + "' at line " + (i + 1));
+                }
+            } else {
+                update(lexer, token);
+            }
+            newTokens[i] = token;
+        }
+        updateRepeats(newTokens, prefix, newEnd, starts, content);
+        List<Token> tokens = new ArrayList<>(count);
+        for (Token token : newTokens) {
+            if (token != null) {
+                tokens.add(token);
+            }
+        }
+        XNCDelta ret = new XNCDelta(tokens, relexed);
+        String selected = getSelected(prefix);
+        addChanges(ret, selected, Arrays.asList(lineTokens).subList(prefix, oldEnd),
+                Arrays.asList(newTokens).subList(prefix, newEnd));
+        hashes = newHashes;
+        lineTokens = newTokens;
+        parsed = true;
+        return ret;
+    }
+
+    /**
+     * Forget the previous version, so that the next one is parsed in full
+     */
+    public void reset() {
+        hashes = new long[0];
+        lineTokens = new Token[0];
+        parsed = false;
+    }
+
+    /**
+     * Check if the METRIC lines among the changed lines differ between the versions
+     */
+    private boolean changesUnits(String content, int[] starts, long[] newHashes, int from, int newTo, int oldTo) {
+        List<Long> oldUnits = new ArrayList<>(), newUnits = new ArrayList<>();
+        for (int i = from; i < oldTo; i++) {
+            if (lineTokens[i] instanceof MetricUnits) {
+                oldUnits.add(hashes[i]);
+            }
+        }
+        for (int i = from; i < newTo; i++) {
+            if (content.startsWith("METRIC", starts[i])) {
+                newUnits.add(newHashes[i]);
+            }
+        }
+        return !oldUnits.equals(newUnits);
+    }
+
+    /**
+     * Bring the lexer to the state it would have after lexing the line of a token taken over
+     */
+    private static void update(XNCLexer lexer, Token token) {
+        if (token instanceof DrillHole) {
+            lexer.setLastHole(((DrillHole) token).getX(), ((DrillHole) token).getY());
+        } else if (token instanceof RepeatHole) {
+            RepeatHole repeatHole = (RepeatHole) token;
+            lexer.setLastHole(RepeatHole.position(repeatHole.getX(), repeatHole.getStepX(), repeatHole.getCount()),
+                    RepeatHole.position(repeatHole.getY(), repeatHole.getStepY(), repeatHole.getCount()));
+        } else {
+            lexer.clearLastHole();
+            if (token instanceof MetricUnits) {
+                lexer.setFormat(CoordinateFormat.fromMetric(((MetricUnits) token).getParameters()));
+            }
+        }
+    }
+
+    /**
+     * Replace the repeats taken over whose repeated hole has changed
+     */
+    private static void updateRepeats(Token[] tokens, int from, int to, int[] starts, String content)
+            throws Exception {
+        float[] last = getLastHole(tokens, from);
+        for (int i = from; i < to; i++) {
+            Token token = tokens[i];
+            if (token instanceof RepeatHole) {
+                RepeatHole repeatHole = (RepeatHole) token;
+                if (last == null) {
+                    throw new Exception("Cannot interpret token '"
+                            + content.substring(starts[i], lineEnd(content, starts[i], starts[i + 1]))
+                            + "' at line " + (i + 1));
+                }
+                if (last[0] != repeatHole.getX() || last[1] != repeatHole.getY()) {
+                    tokens[i] = new RepeatHole(last[0], last[1], repeatHole.getCount(), repeatHole.getStepX(),
+                            repeatHole.getStepY());
+                }
+            }
+            if (token != null) {
+                last = getLastHole(tokens, i + 1);
+            }
+        }
+    }
+
+    /**
+     * Get the position of the hole that a repeat on a line would repeat
+     *
+     * @return the coordinates or null if a repeat is not valid on the line
+     */
+    private static float[] getLastHole(Token[] tokens, int line) {
+        float[] ret = null;
+        int i = line - 1;
+        while (i >= 0 && tokens[i] == null) {
+            i--;
+        }
+        if (i >= 0 && tokens[i] instanceof DrillHole) {
+            ret = new float[]{((DrillHole) tokens[i]).getX(), ((DrillHole) tokens[i]).getY()};
+        } else if (i >= 0 && tokens[i] instanceof RepeatHole) {
+            RepeatHole repeatHole = (RepeatHole) tokens[i];
+            ret = new float[]{RepeatHole.position(repeatHole.getX(), repeatHole.getStepX(), repeatHole.getCount()),
+                    RepeatHole.position(repeatHole.getY(), repeatHole.getStepY(), repeatHole.getCount())};
+        }
+        return ret;
+    }
+
+    private static boolean isHoleOrComment(Token token) {
+        return token == null || token instanceof DrillHole || token instanceof RepeatHole;
+    }
+
+    /**
+     * Get the coordinate format in effect before a line of the previous version
+     */
+    private CoordinateFormat getFormat(int line) {
+        CoordinateFormat ret = CoordinateFormat.DECIMAL_POINT;
+        for (int i = line - 1; i >= 0; i--) {
+            if (lineTokens[i] instanceof MetricUnits) {
+                ret = CoordinateFormat.fromMetric(((MetricUnits) lineTokens[i]).getParameters());
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the id of the tool that the holes which follow a line of the previous version are drilled with
+     */
+    private String getSelected(int line) {
+        String ret = null;
+        int i = line - 1;
+        while (i >= 0 && isHoleOrComment(lineTokens[i])) {
+            i--;
+        }
+        if (i >= 0 && lineTokens[i] instanceof SelectTool) {
+            ret = ((SelectTool) lineTokens[i]).getId();
+        }
+        return ret;
+    }
+
+    /**
+     * Compare the holes of the old and of the new lines. The holes found in both cancel out, then a removed hole
+     * and an added hole of the same tool are paired as a move, in the order of the lines
+     */
+    private static void addChanges(XNCDelta delta, String selected, List<Token> oldTokens, List<Token> newTokens)
+            throws Exception {
+        List<XNCDelta.Change> removed = getHoles(selected, oldTokens, false);
+        List<XNCDelta.Change> added = getHoles(selected, newTokens, true);
+        Map<String, Deque<Integer>> removedByKey = new HashMap<>();
+        for (int i = 0; i < removed.size(); i++) {
+            removedByKey.computeIfAbsent(getKey(removed.get(i).getToolId(), removed.get(i).getFrom()),
+                    k -> new ArrayDeque<>()).add(i);
+        }
+        boolean[] cancelled = new boolean[removed.size()];
+        List<XNCDelta.Change> remaining = new ArrayList<>();
+        for (XNCDelta.Change change : added) {
+            Deque<Integer> same = removedByKey.get(getKey(change.getToolId(), change.getTo()));
+            if (same != null && !same.isEmpty()) {
+                cancelled[same.poll()] = true;
+            } else {
+                remaining.add(change);
+            }
+        }
+        Map<String, Deque<XNCDelta.Change>> removedByTool = new HashMap<>();
+        for (int i = 0; i < removed.size(); i++) {
+            if (!cancelled[i]) {
+                removedByTool.computeIfAbsent(String.valueOf(removed.get(i).getToolId()),
+                        k -> new ArrayDeque<>()).add(removed.get(i));
+            }
+        }
+        for (XNCDelta.Change change : remaining) {
+            Deque<XNCDelta.Change> sameTool = removedByTool.get(String.valueOf(change.getToolId()));
+            if (sameTool != null && !sameTool.isEmpty()) {
+                delta.add(new XNCDelta.Change(change.getToolId(), sameTool.poll().getFrom(), change.getTo()));
+            } else {
+                delta.add(change);
+            }
+        }
+        for (Deque<XNCDelta.Change> changes : removedByTool.values()) {
+            for (XNCDelta.Change change : changes) {
+                delta.add(change);
+            }
+        }
+    }
+
+    private static List<XNCDelta.Change> getHoles(String selected, List<Token> tokens, boolean added)
+            throws Exception {
+        HoleLister ret = new HoleLister(selected, added);
+        XNCTokenListHandler.replay(tokens, ret);
+        return ret.changes;
+    }
+
+    private static String getKey(String toolId, DrillHole drillHole) {
+        return toolId + ":" + Float.floatToIntBits(drillHole.getX()) + ":" + Float.floatToIntBits(drillHole.getY());
+    }
+
+    /**
+     * Get the start of every line, as BufferedReader.readLine splits them, followed by the end of the content
+     */
+    private static int[] splitLines(String content) {
+        int[] ret = new int[16];
+        int count = 0;
+        int length = content.length();
+        for (int start = 0; start < length; ) {
+            if (count + 1 >= ret.length) {
+                ret = Arrays.copyOf(ret, ret.length * 2);
+            }
+            ret[count++] = start;
+            int i = start;
+            char c = 0;
+            while (i < length && (c = content.charAt(i)) != '\n' && c != '\r') {
+                i++;
+            }
+            if (i < length) {
+                i++;
+                if (c == '\r' && i < length && content.charAt(i) == '\n') {
+                    i++;
+                }
+            }
+            start = i;
+        }
+        ret[count++] = length;
+        return Arrays.copyOf(ret, count);
+    }
+
+    /**
+     * Get the end of a line without its terminator
+     */
+    private static int lineEnd(String content, int start, int next) {
+        int ret = next;
+        while (ret > start && (content.charAt(ret - 1) == '\n' || content.charAt(ret - 1) == '\r')) {
+            ret--;
+        }
+        return ret;
+    }
+
+    private static long hash(String content, int start, int end) {
+        long ret = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            ret = (ret ^ content.charAt(i)) * FNV_PRIME;
+        }
+        return ret;
+    }
+
+    /**
+     * Lists the holes of a range of lines as changes of the tool they belong to
+     */
+    private static class HoleLister extends XNCSelectionHandler<String> {
+        private final List<XNCDelta.Change> changes = new ArrayList<>();
+        private final boolean added;
+
+        HoleLister(String selected, boolean added) {
+            this.added = added;
+            setSelected(selected);
+        }
+
+        @Override
+        protected String resolve(String id) {
+            return id;
+        }
+
+        @Override
+        public void onDrill(float x, float y) {
+            DrillHole drillHole = new DrillHole(x, y);
+            changes.add(added ? new XNCDelta.Change(getSelected(), null, drillHole)
+                    : new XNCDelta.Change(getSelected(), drillHole, null));
+        }
+    }
+}
@@ -0,0 +1,547 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.*;
+
+/**
+ * A hand written lexer for one line of XNC content. It dispatches on the first character of the line and
+ * decodes the coordinates in a single pass over the characters. The accepted grammar is the one described by
+ * the PATTERN of each token in the bo package. The lexer keeps a cursor, so an instance must not be shared
+ * between threads
+ *
+ * @author Petre Maierean
+ */
+public class XNCLexer {
+    private static final int MAX_EXACT_MANTISSA = 1 << 24;
+    private static final long MAX_MANTISSA = Long.MAX_VALUE / 10 - 9;
+    private static final float[] POWERS_OF_TEN = {
+            1f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    private float offsetX, offsetY;
+    private CharSequence line;
+    private int pos, end;
+    private float x, y, value, stepX, stepY, lastX, lastY;
+    private int count;
+    private boolean lastHole;
+    private String text;
+    private CoordinateFormat format;
+
+    public XNCLexer() {
+        this(0f, 0f);
+    }
+
+    public XNCLexer(float offsetX, float offsetY) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        setFormat(CoordinateFormat.DECIMAL_POINT);
+    }
+
+    /**
+     * Convert a line into a token
+     *
+     * @param s the line without the line terminator
+     * @return the token or null if the line cannot be interpreted
+     */
+    public Token nextToken(CharSequence s) {
+        Token ret = null;
+        Tokens token = lex(s);
+        if (token != null) {
+            switch (token) {
+                case drill:
+                    ret = new DrillHole(x, y);
+                    break;
+                case move:
+                    ret = new Move(x, y);
+                    break;
+                case select:
+                    ret = new SelectTool(text);
+                    break;
+                case tool:
+                    ret = new Tool(text, value);
+                    break;
+                case format:
+                    ret = new Format(text);
+                    break;
+                case setDrillMode:
+                    ret = new SetDrillMode(text);
+                    break;
+                case endHeader:
+                    ret = new EndHeader();
+                    break;
+                case endFile:
+                    ret = new EndFile();
+                    break;
+                case liftTool:
+                    ret = new LiftRuteToolUp();
+                    break;
+                case plunge:
+                    ret = new PlungeRuteToolDown();
+                    break;
+                case start:
+                    ret = new StartHeader();
+                    break;
+                case metric:
+                    ret = new MetricUnits(text);
+                    break;
+                case repeat:
+                    ret = new RepeatHole(x, y, count, stepX, stepY);
+                    break;
+                default:
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Recognize a line without creating a token. The decoded content is available until the next line is
+     * lexed: getX and getY for a drill or a move, getText for the tool id of a select or
+     * a tool, for the mode of a drill mode or for the parameters of a format or of the metric units, and
+     * getValue for the diameter of a tool, and getX, getY, getCount, getStepX and getStepY for a repeat, where
+     * the coordinates are the ones of the hole which is repeated. A METRIC line with parameters changes the
+     * coordinate format for the lines that follow it. A repeat is only valid right after a hole or another repeat
+     *
+     * @param s the line without the line terminator
+     * @return the kind of token or null if the line cannot be interpreted
+     */
+    public Tokens lex(CharSequence s) {
+        Tokens ret = null;
+        line = s;
+        pos = 0;
+        end = s.length();
+        text = null;
+        if (end > 0) {
+            switch (s.charAt(0)) {
+                case 'X':
+                    ret = lexDrillHole();
+                    break;
+                case 'G':
+                    ret = lexG();
+                    break;
+                case 'T':
+                    ret = lexT();
+                    break;
+                case 'M':
+                    ret = lexM();
+                    break;
+                case 'F':
+                    ret = lexFormat();
+                    break;
+                case '%':
+                    if (end == 1) {
+                        ret = Tokens.endHeader;
+                    }
+                    break;
+                case 'R':
+                    ret = lexRepeat();
+                    break;
+                default:
+            }
+        }
+        line = null;
+        if (ret == Tokens.drill) {
+            setLastHole(x, y);
+        } else if (ret == Tokens.repeat) {
+            setLastHole(RepeatHole.position(x, stepX, count), RepeatHole.position(y, stepY, count));
+        } else if (ret != null) {
+            clearLastHole();
+        }
+        return ret;
+    }
+
+    /**
+     * Recognize a line and pass its content to a handler
+     *
+     * @param s the line without the line terminator
+     * @param handler
+     * @return the kind of token or null if the line cannot be interpreted
+     * @throws Exception the handler failed
+     */
+    public Tokens lex(CharSequence s, XNCHandler handler) throws Exception {
+        Tokens ret = lex(s);
+        if (ret != null) {
+            switch (ret) {
+                case drill:
+                    handler.onDrill(x, y);
+                    break;
+                case move:
+                    handler.onMove(x, y);
+                    break;
+                case select:
+                    handler.onSelect(text);
+                    break;
+                case tool:
+                    handler.onTool(text, value);
+                    break;
+                case format:
+                    handler.onFormat(text);
+                    break;
+                case setDrillMode:
+                    handler.onDrillMode(text);
+                    break;
+                case endHeader:
+                    handler.onHeaderEnd();
+                    break;
+                case endFile:
+                    handler.onEndFile();
+                    break;
+                case liftTool:
+                    handler.onLift();
+                    break;
+                case plunge:
+                    handler.onPlunge();
+                    break;
+                case start:
+                    handler.onStartHeader();
+                    break;
+                case metric:
+                    handler.onMetric(text);
+                    break;
+                case repeat:
+                    handler.onRepeat(x, y, count, stepX, stepY);
+                    break;
+                default:
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Describe why a line that cannot be interpreted has been rejected. It only looks at the instruction the
+     * line starts with
+     *
+     * @param s the line without the line terminator
+     * @return
+     */
+    public static String diagnose(CharSequence s) {
+        String ret = "Unknown instruction";
+        if (s.length() == 0) {
+            ret = "Empty line";
+        } else {
+            switch (s.charAt(0)) {
+                case 'X':
+                    ret = "Malformed coordinates";
+                    break;
+                case 'G':
+                    ret = "Malformed G code";
+                    break;
+                case 'T':
+                    ret = "Malformed tool";
+                    break;
+                case 'M':
+                    ret = "Unknown M code";
+                    break;
+                case 'F':
+                    ret = "Malformed format";
+                    break;
+                case '%':
+                    ret = "Malformed end of header";
+                    break;
+                case 'R':
+                    ret = "Malformed repeat or no hole to repeat";
+                    break;
+                default:
+            }
+        }
+        return ret;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public float getStepX() {
+        return stepX;
+    }
+
+    public float getStepY() {
+        return stepY;
+    }
+
+    /**
+     * Check if the last line lexed is a hole or a repeat, which a repeat on the next line can repeat
+     *
+     * @return
+     */
+    public boolean hasLastHole() {
+        return lastHole;
+    }
+
+    public float getLastX() {
+        return lastX;
+    }
+
+    public float getLastY() {
+        return lastY;
+    }
+
+    /**
+     * Set the hole that a repeat on the next line repeats, when the lines are not lexed in sequence
+     *
+     * @param x
+     * @param y
+     */
+    public void setLastHole(float x, float y) {
+        lastHole = true;
+        lastX = x;
+        lastY = y;
+    }
+
+    public void clearLastHole() {
+        lastHole = false;
+    }
+
+    public CoordinateFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Set the format of the coordinates. The METRIC header sets it while lexing
+     *
+     * @param format
+     */
+    public void setFormat(CoordinateFormat format) {
+        this.format = format;
+    }
+
+    private Tokens lexDrillHole() {
+        Tokens ret = null;
+        pos = 0;
+        if (lexCoordinates()) {
+            ret = Tokens.drill;
+        }
+        return ret;
+    }
+
+    private Tokens lexG() {
+        Tokens ret = null;
+        pos = 1;
+        int digits = skipDigits();
+        if (digits > 0) {
+            if (pos == end) {
+                text = line.subSequence(1, end).toString();
+                ret = Tokens.setDrillMode;
+            } else if (digits == 2 && line.charAt(1) == '0' && line.charAt(2) == '0' && lexCoordinates()) {
+                ret = Tokens.move;
+            }
+        }
+        return ret;
+    }
+
+    private Tokens lexT() {
+        Tokens ret = null;
+        pos = 1;
+        if (skipDigits() > 0) {
+            if (pos == end) {
+                text = line.subSequence(1, end).toString();
+                ret = Tokens.select;
+            } else {
+                int idEnd = pos;
+                if (expect('C') && lexDecimal(false, false) && pos == end) {
+                    text = line.subSequence(1, idEnd).toString();
+                    ret = Tokens.tool;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private Tokens lexM() {
+        Tokens ret = null;
+        if (end == 3) {
+            char c1 = line.charAt(1), c2 = line.charAt(2);
+            if (c1 == '1' && c2 == '5') {
+                ret = Tokens.plunge;
+            } else if (c1 == '1' && c2 == '6') {
+                ret = Tokens.liftTool;
+            } else if (c1 == '3' && c2 == '0') {
+                ret = Tokens.endFile;
+            } else if (c1 == '4' && c2 == '8') {
+                ret = Tokens.start;
+            }
+        } else if (startsWith("METRIC") && (end == 6 || line.charAt(6) == ',')) {
+            text = end == 6 ? null : line.subSequence(7, end).toString();
+            setFormat(CoordinateFormat.fromMetric(text));
+            ret = Tokens.metric;
+        }
+        return ret;
+    }
+
+    /**
+     * Decodes R(count) followed by an X step, an Y step or both, up to the end of the line
+     */
+    private Tokens lexRepeat() {
+        Tokens ret = null;
+        pos = 1;
+        int digits = skipDigits();
+        if (lastHole && digits > 0 && digits < 10) {
+            count = Integer.parseInt(line.subSequence(1, pos).toString());
+            stepX = 0f;
+            stepY = 0f;
+            boolean hasX = expect('X'), valid = !hasX || lexDecimal(true, true);
+            if (valid && hasX) {
+                stepX = value;
+            }
+            boolean hasY = valid && expect('Y');
+            valid = valid && (!hasY || lexDecimal(true, true));
+            if (valid && hasY) {
+                stepY = value;
+            }
+            if (valid && (hasX || hasY) && pos == end) {
+                x = lastX;
+                y = lastY;
+                ret = Tokens.repeat;
+            }
+        }
+        return ret;
+    }
+
+    private Tokens lexFormat() {
+        Tokens ret = null;
+        if (startsWith("FMAT")) {
+            boolean singleLine = true;
+            for (pos = 4; singleLine && pos < end; pos++) {
+                singleLine = !isRegexLineTerminator(line.charAt(pos));
+            }
+            if (singleLine) {
+                text = line.subSequence(4, end).toString();
+                ret = Tokens.format;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Decodes X(-)ddd.dddY(-)ddd.ddd up to the end of the line, starting from the cursor. The decimal point can
+     * be missing when the coordinate format allows it
+     *
+     * @return true if the coordinates have been decoded into the x and y fields
+     */
+    private boolean lexCoordinates() {
+        boolean ret = false;
+        if (expect('X') && lexDecimal(true, true)) {
+            x = value + offsetX;
+            if (expect('Y') && lexDecimal(true, true) && pos == end) {
+                y = value + offsetY;
+                ret = true;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Decodes a number with the form (-)ddd.ddd starting from the cursor, or with the form (-)dddddd when the
+     * coordinate format allows it, in which case the digits are placed by the format. For a number with a decimal point the value is exactly the one Float.parseFloat returns for the same
+     * text: when the digits fit in the mantissa of a float the result is a single correctly rounded division,
+     * otherwise the text is handed to Float.parseFloat
+     *
+     * @param signed
+     * @param implied true if the number may be written without a decimal point
+     * @return true if a number has been decoded into the value field
+     */
+    private boolean lexDecimal(boolean signed, boolean implied) {
+        int start = pos;
+        boolean negative = false;
+        if (signed && pos < end && line.charAt(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        boolean overflow = false;
+        int digits = 0, fractionDigits = -1;
+        for (char c; pos < end; pos++) {
+            c = line.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (mantissa < MAX_MANTISSA) {
+                    mantissa = mantissa * 10 + (c - '0');
+                } else {
+                    overflow = true;
+                }
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0 && digits > 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        boolean ret = false;
+        if (fractionDigits > 0) {
+            if (!overflow && mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+                value = (float) mantissa / POWERS_OF_TEN[fractionDigits];
+            } else {
+                value = Math.abs(Float.parseFloat(line.subSequence(start, pos).toString()));
+            }
+            ret = true;
+        } else if (fractionDigits < 0 && digits > 0 && implied && format.isImpliedDecimal() && !overflow) {
+            value = format.toFloat(format.toFixedImplied(mantissa, digits));
+            ret = true;
+        }
+        if (negative) {
+            value = -value;
+        }
+        return ret;
+    }
+
+    private int skipDigits() {
+        int start = pos;
+        for (char c; pos < end && (c = line.charAt(pos)) >= '0' && c <= '9'; ) {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    private boolean expect(char c) {
+        boolean ret = false;
+        if (pos < end && line.charAt(pos) == c) {
+            pos++;
+            ret = true;
+        }
+        return ret;
+    }
+
+    private boolean startsWith(String prefix) {
+        boolean ret = end >= prefix.length();
+        for (int i = 0; ret && i < prefix.length(); i++) {
+            ret = line.charAt(i) == prefix.charAt(i);
+        }
+        return ret;
+    }
+
+    private static boolean isRegexLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
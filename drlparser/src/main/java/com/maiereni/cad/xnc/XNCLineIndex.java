@@ -0,0 +1,236 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The byte offsets at which the lines of a XNC file start, packed in a long array, so that a line can be found
+ * and read without reading the lines before it. The lines are recognized with the same terminators as
+ * BufferedReader.readLine. The lines are numbered from 1, as in the error messages and the diagnostics. The
+ * index can be built on its own or filled by the parser while it maps the file in memory
+ *
+ * @author Petre Maierean
+ */
+public class XNCLineIndex {
+    private static final int MAPPING_WINDOW = 1 << 26;
+    private long[] starts = new long[1024];
+    private int lineCount;
+    private long length;
+
+    /**
+     * Build the index of the lines of a file
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public static XNCLineIndex build(File f) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        XNCLineIndex ret = new XNCLineIndex();
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            XNCLineScanner scanner = XNCLineScanner.getDefault();
+            boolean lineStart = true, carriageReturn = false;
+            for (long position = 0; position < size; position += MAPPING_WINDOW) {
+                int length = (int) Math.min(size - position, MAPPING_WINDOW);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                // a line feed which follows a carriage return at the end of the previous window ends no line
+                int i = carriageReturn && buffer.get(0) == '\n' ? 1 : 0;
+                carriageReturn = false;
+                while (i < length) {
+                    if (lineStart) {
+                        ret.add(position + i);
+                    }
+                    int end = scanner.indexOfTerminator(buffer, i, length);
+                    lineStart = end < length;
+                    if (lineStart && buffer.get(end) == '\r') {
+                        if (end + 1 == length) {
+                            carriageReturn = true;
+                        } else if (buffer.get(end + 1) == '\n') {
+                            end++;
+                        }
+                    }
+                    i = end + 1;
+                }
+            }
+            ret.setLength(size);
+        }
+        return ret;
+    }
+
+    /**
+     * Add the start of the next line
+     *
+     * @param offset
+     */
+    public void add(long offset) {
+        if (lineCount == starts.length) {
+            starts = Arrays.copyOf(starts, lineCount * 2);
+        }
+        starts[lineCount++] = offset;
+    }
+
+    /**
+     * Set the length of the content, which is where the last line ends
+     *
+     * @param length
+     */
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void clear() {
+        lineCount = 0;
+        length = 0;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Get the offset of the first byte of a line
+     *
+     * @param lineNumber
+     * @return
+     * @throws Exception the line does not exist
+     */
+    public long getStart(int lineNumber) throws Exception {
+        checkLine(lineNumber);
+        return starts[lineNumber - 1];
+    }
+
+    /**
+     * Get the offset after the last byte of a line, terminator included
+     *
+     * @param lineNumber
+     * @return
+     * @throws Exception the line does not exist
+     */
+    public long getEnd(int lineNumber) throws Exception {
+        checkLine(lineNumber);
+        return lineNumber == lineCount ? length : starts[lineNumber];
+    }
+
+    /**
+     * Get the number of the line which holds a byte
+     *
+     * @param offset
+     * @return the number of the line or 0 if the offset is outside of the content
+     */
+    public int getLineNumber(long offset) {
+        int ret = 0;
+        if (offset >= 0 && offset < length && lineCount > 0) {
+            int lo = 0, hi = lineCount - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (starts[mid] <= offset) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            ret = lo + 1;
+        }
+        return ret;
+    }
+
+    /**
+     * Read a range of lines of the indexed file
+     *
+     * @param f
+     * @param lineNumber the number of the first line to read
+     * @param count the number of lines to read, fewer if the file ends before
+     * @return the lines without their terminators
+     * @throws Exception
+     */
+    public List<String> readLines(File f, int lineNumber, int count) throws Exception {
+        checkLine(lineNumber);
+        int last = (int) Math.min((long) lineNumber + Math.max(count, 0) - 1, lineCount);
+        List<String> ret = new ArrayList<>(Math.max(last - lineNumber + 1, 0));
+        if (last >= lineNumber) {
+            long from = getStart(lineNumber), to = getEnd(last);
+            if (to - from > Integer.MAX_VALUE) {
+                throw new Exception("The lines " + lineNumber + " to " + last + " are too long to be read at once");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+            try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, from + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+            }
+            if (buffer.hasRemaining()) {
+                throw new Exception("The file " + f.getPath() + " is shorter than the index");
+            }
+            byte[] bytes = buffer.array();
+            for (int line = lineNumber; line <= last; line++) {
+                int start = (int) (getStart(line) - from), end = (int) (getEnd(line) - from);
+                while (end > start && (bytes[end - 1] == '\n' || bytes[end - 1] == '\r')) {
+                    end--;
+                }
+                ret.add(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Open a reader of the indexed file which starts at a line
+     *
+     * @param f
+     * @param lineNumber
+     * @return
+     * @throws Exception
+     */
+    public Reader openReader(File f, int lineNumber) throws Exception {
+        long start = getStart(lineNumber);
+        FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+        try {
+            channel.position(start);
+        } catch (Exception e) {
+            channel.close();
+            throw e;
+        }
+        return Channels.newReader(channel, StandardCharsets.ISO_8859_1);
+    }
+
+    private void checkLine(int lineNumber) throws Exception {
+        if (lineNumber < 1 || lineNumber > lineCount) {
+            throw new Exception("The line " + lineNumber + " is not in the index of " + lineCount + " lines");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the line terminators in a buffer of XNC content. The scalar scanner reads one byte at a time. The
+ * vector scanner compares the bytes a vector register holds at once, with the Vector API of the JDK, which is
+ * an incubator module: it is only built with the vector profile and only available when the JVM runs with
+ * --add-modules jdk.incubator.vector. The default scanner is the vector one when it is available, unless the
+ * system property com.maiereni.cad.xnc.vector is false, and the scalar one otherwise. Both give the same
+ * results
+ *
+ * @author Petre Maierean
+ */
+public abstract class XNCLineScanner {
+    public static final String VECTOR_PROPERTY = "com.maiereni.cad.xnc.vector";
+    private static final Logger logger = LogManager.getLogger(XNCLineScanner.class);
+
+    /**
+     * Find the first line feed or carriage return of a range
+     *
+     * @param buffer
+     * @param from the position to start from
+     * @param to the position after the last byte to look at
+     * @return the position of the terminator or to if there is none
+     */
+    public abstract int indexOfTerminator(ByteBuffer buffer, int from, int to);
+
+    /**
+     * Count the lines of a range which starts at the beginning of a line, as BufferedReader.readLine would read
+     * them. A carriage return followed by a line feed ends a single line
+     *
+     * @param buffer
+     * @param from
+     * @param to
+     * @return
+     */
+    public long countLines(ByteBuffer buffer, int from, int to) {
+        long ret = 0;
+        int start = from;
+        while (start < to) {
+            int end = indexOfTerminator(buffer, start, to);
+            ret++;
+            if (end < to && buffer.get(end) == '\r' && end + 1 < to && buffer.get(end + 1) == '\n') {
+                end++;
+            }
+            start = end + 1;
+        }
+        return ret;
+    }
+
+    public static XNCLineScanner getScalar() {
+        return Scanners.SCALAR;
+    }
+
+    /**
+     * Get the vector scanner
+     *
+     * @return the scanner or null if the Vector API is not available
+     */
+    public static XNCLineScanner getVector() {
+        return Scanners.VECTOR;
+    }
+
+    /**
+     * Get the vector scanner if it is available and enabled, the scalar one otherwise
+     *
+     * @return
+     */
+    public static XNCLineScanner getDefault() {
+        return Scanners.DEFAULT;
+    }
+
+    private static class ScalarScanner extends XNCLineScanner {
+        @Override
+        public int indexOfTerminator(ByteBuffer buffer, int from, int to) {
+            int ret = from;
+            byte b;
+            while (ret < to && (b = buffer.get(ret)) != '\n' && b != '\r') {
+                ret++;
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Creates the scanners the first time they are asked for. The vector scanner is created by reflection, so
+     * that its class is not loaded when the incubator module is missing. It is only used if it finds the same
+     * terminators as the scalar one in a probe, since the incubator API changes between the releases of the JDK
+     * and a missing method only fails when it is first called
+     */
+    private static class Scanners {
+        static final XNCLineScanner SCALAR = new ScalarScanner();
+        static final XNCLineScanner VECTOR = createVector();
+        static final XNCLineScanner DEFAULT = VECTOR != null
+                && !"false".equalsIgnoreCase(System.getProperty(VECTOR_PROPERTY)) ? VECTOR : SCALAR;
+
+        private static XNCLineScanner createVector() {
+            XNCLineScanner ret = null;
+            try {
+                XNCLineScanner scanner = (XNCLineScanner) Class.forName(
+                        XNCLineScanner.class.getPackage().getName() + ".XNCVectorLineScanner")
+                        .getDeclaredConstructor().newInstance();
+                if (probe(scanner)) {
+                    ret = scanner;
+                } else {
+                    logger.warn("The vector scanner does not find the line terminators, the scalar one is used");
+                }
+            } catch (Exception | LinkageError e) {
+                logger.debug("The Vector API is not available, the lines are scanned one byte at a time");
+            }
+            return ret;
+        }
+
+        private static boolean probe(XNCLineScanner scanner) {
+            boolean ret = true;
+            byte[] bytes = new byte[517];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (i % 97 == 96 ? '\n' : i % 61 == 60 ? '\r' : 'X');
+            }
+            ByteBuffer heap = ByteBuffer.wrap(bytes);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            for (int from = 0; ret && from < bytes.length; from += 13) {
+                int expected = SCALAR.indexOfTerminator(heap, from, bytes.length);
+                ret = scanner.indexOfTerminator(heap, from, bytes.length) == expected
+                        && scanner.indexOfTerminator(direct, from, bytes.length) == expected;
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.RepeatHole;
+import com.maiereni.cad.xnc.bo.Tokens;
+import com.maiereni.cad.xnc.bo.Tool;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Parses large XNC content on a fork join pool. The content is split in chunks at line boundaries, each chunk
+ * is parsed on its own, and the chunks are stitched in order afterwards. The state which crosses the lines is
+ * the selected tool and the coordinate format: a chunk records the holes it reads before its first tool
+ * instruction as inheriting the tool of the previous chunk, and the stitching resolves them. A repeat is kept in
+ * the chunk of the hole it repeats. The header is parsed first, so that every chunk decodes the coordinates
+ * with the format it declares. When a METRIC line changes the format in a chunk, the chunks that follow it are
+ * parsed again with the new format before they are stitched. The result and the error messages are the same as
+ * the ones of the sequential parse
+ *
+ * @author Petre Maierean
+ */
+public class XNCParallelParser {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    private static final long MAPPING_WINDOW = 1L << 30;
+    private final Supplier<XNCLexer> lexers;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private XNCDiagnostics diagnostics;
+
+    public XNCParallelParser(Supplier<XNCLexer> lexers) {
+        this(lexers, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a parser
+     *
+     * @param lexers creates a lexer for each chunk
+     * @param pool the pool to parse the chunks on
+     * @param chunkSize the minimum size in bytes of a chunk
+     */
+    public XNCParallelParser(Supplier<XNCLexer> lexers, ForkJoinPool pool, int chunkSize) {
+        this.lexers = lexers;
+        this.pool = pool;
+        this.chunkSize = Math.max(chunkSize, 1);
+    }
+
+    /**
+     * Parse a XNC file into tokens
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public List<Token> parse(File f) throws Exception {
+        TokenStitcher ret = new TokenStitcher();
+        read(f, ret);
+        return ret.tokens;
+    }
+
+    /**
+     * Parse the content of a buffer into tokens
+     *
+     * @param buffer
+     * @return
+     * @throws Exception
+     */
+    public List<Token> parse(ByteBuffer buffer) throws Exception {
+        TokenStitcher ret = new TokenStitcher();
+        read(buffer, 0, buffer.limit(), true, ret);
+        return ret.tokens;
+    }
+
+    /**
+     * Parse a XNC file into a table of drill holes
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public DrillHoleTable parseTable(File f) throws Exception {
+        TableStitcher ret = new TableStitcher();
+        read(f, ret);
+        return ret.table;
+    }
+
+    /**
+     * Parse the content of a buffer into a table of drill holes
+     *
+     * @param buffer
+     * @return
+     * @throws Exception
+     */
+    public DrillHoleTable parseTable(ByteBuffer buffer) throws Exception {
+        TableStitcher ret = new TableStitcher();
+        read(buffer, 0, buffer.limit(), true, ret);
+        return ret.table;
+    }
+
+    private void read(File f, Stitcher<?> stitcher) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; ) {
+                long length = Math.min(size - position, MAPPING_WINDOW);
+                boolean complete = position + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int read = read(buffer, position, (int) length, complete, stitcher);
+                if (read == 0) {
+                    throw new Exception("The line at " + (stitcher.lines + 1) + " is too long");
+                }
+                position += read;
+            }
+        }
+    }
+
+    private <C extends Chunk> int read(ByteBuffer buffer, long offset, int length, boolean complete,
+                                       Stitcher<C> stitcher) throws Exception {
+        int end = complete ? length : lastLineEnd(buffer, length);
+        int from = 0;
+        if (!stitcher.headerRead) {
+            from = readHeader(buffer, offset, end, stitcher);
+        }
+        List<C> chunks = new ArrayList<>();
+        int count = (int) Math.max(1, Math.min((end - from) / chunkSize, pool.getParallelism() * 4L));
+        long step = (end - from) / count;
+        for (int i = 0, start = from; i < count && start < end; i++) {
+            int to = i == count - 1 ? end : nextLineStart(buffer, (int) (from + step * (i + 1)), end);
+            // a repeat stays in the chunk of the hole it repeats, along with the comments in between
+            while (to < end && (buffer.get(to) == 'R' || buffer.get(to) == ';')) {
+                to = nextLineStart(buffer, to, end);
+            }
+            if (to > start) {
+                chunks.add(prepare(stitcher.newChunk(buffer, start, to), offset, stitcher));
+                start = to;
+            }
+        }
+        invoke(chunks);
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!chunks.get(i).format.equals(stitcher.format)) {
+                // a METRIC line of a previous chunk changed the format, so the chunks that follow are parsed again
+                for (int j = i; j < chunks.size(); j++) {
+                    C chunk = chunks.get(j);
+                    chunks.set(j, prepare(stitcher.newChunk(buffer, chunk.from, chunk.to), offset, stitcher));
+                }
+                invoke(chunks.subList(i, chunks.size()));
+            }
+            stitch(chunks.get(i), stitcher);
+        }
+        return end;
+    }
+
+    private void invoke(List<? extends Chunk> chunks) {
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(chunks);
+            }
+        });
+    }
+
+    /**
+     * Parse the lines up to the end of the header on the calling thread, so that the coordinate format declared
+     * by the header is known to all the chunks. Without a header that ends in the buffer, the format is found
+     * when the chunk that declares it is stitched
+     *
+     * @return the position after the header, or 0 if the header does not end in the buffer
+     */
+    private <C extends Chunk> int readHeader(ByteBuffer buffer, long offset, int end, Stitcher<C> stitcher)
+            throws Exception {
+        int ret = 0;
+        for (int start = 0; ret == 0 && start < end; ) {
+            int next = nextLineStart(buffer, start, end);
+            if (buffer.get(start) == '%' && (start + 1 == end || buffer.get(start + 1) == '\n'
+                    || buffer.get(start + 1) == '\r')) {
+                ret = next;
+            }
+            start = next;
+        }
+        if (ret > 0) {
+            C header = prepare(stitcher.newChunk(buffer, 0, ret), offset, stitcher);
+            header.compute();
+            stitch(header, stitcher);
+        }
+        stitcher.headerRead = true;
+        return ret;
+    }
+
+    private <C extends Chunk> C prepare(C chunk, long offset, Stitcher<C> stitcher) {
+        chunk.format = stitcher.format;
+        chunk.lexer.setFormat(chunk.format);
+        if (chunk.from == 0 && stitcher.lastHole) {
+            chunk.lexer.setLastHole(stitcher.lastX, stitcher.lastY);
+        }
+        chunk.offset = offset;
+        if (diagnostics != null) {
+            chunk.diagnostics = new XNCDiagnostics(diagnostics.getLimit());
+        }
+        return chunk;
+    }
+
+    private <C extends Chunk> void stitch(C chunk, Stitcher<C> stitcher) throws Exception {
+        if (chunk.failure != null) {
+            throw chunk.failure;
+        }
+        if (chunk.failedLine != null) {
+            throw new Exception("Cannot interpret token '" + chunk.failedLine + "' at line "
+                    + (stitcher.lines + chunk.lineCount));
+        }
+        if (chunk.diagnostics != null) {
+            diagnostics.addAll(chunk.diagnostics, stitcher.lines);
+        }
+        stitcher.stitch(chunk);
+        stitcher.lines += chunk.lineCount;
+        stitcher.lastHole = chunk.lexer.hasLastHole();
+        stitcher.lastX = chunk.lexer.getLastX();
+        stitcher.lastY = chunk.lexer.getLastY();
+        stitcher.format = chunk.lexer.getFormat();
+    }
+
+    public XNCDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Make the parser lenient. The lines that cannot be interpreted are recorded in the diagnostics, in the
+     * order of the content, and skipped
+     *
+     * @param diagnostics the collector or null to fail on the first line that cannot be interpreted
+     */
+    public void setDiagnostics(XNCDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Get the position of the start of the line that follows the position, or the end
+     */
+    private static int nextLineStart(ByteBuffer buffer, int position, int end) {
+        int ret = position;
+        while (ret < end && buffer.get(ret) != '\n' && buffer.get(ret) != '\r') {
+            ret++;
+        }
+        if (ret < end) {
+            if (buffer.get(ret) == '\r' && ret + 1 < end && buffer.get(ret + 1) == '\n') {
+                ret++;
+            }
+            ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * Get the position after the last line terminator of a window that does not end the content. A carriage
+     * return at the very end of the window is not taken, since a line feed may follow it in the next window
+     */
+    private static int lastLineEnd(ByteBuffer buffer, int length) {
+        int ret = length - 1;
+        if (ret >= 0 && buffer.get(ret) == '\r') {
+            ret--;
+        }
+        while (ret >= 0 && buffer.get(ret) != '\n' && buffer.get(ret) != '\r') {
+            ret--;
+        }
+        return ret + 1;
+    }
+
+    /**
+     * A range of lines parsed on its own
+     */
+    private abstract class Chunk extends RecursiveAction implements XNCByteReader.LineConsumer {
+        final ByteBuffer buffer;
+        final int from, to;
+        final XNCLexer lexer = lexers.get();
+        int lineCount;
+        long offset;
+        CoordinateFormat format;
+        XNCDiagnostics diagnostics;
+        String failedLine;
+        Exception failure;
+
+        Chunk(ByteBuffer buffer, int from, int to) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            XNCByteReader reader = new XNCByteReader(this, 0, diagnostics);
+            reader.setOffset(offset);
+            try {
+                reader.read(buffer, from, to, true);
+            } catch (Exception e) {
+                if (failedLine == null) {
+                    failure = e;
+                }
+            }
+            lineCount = reader.getLineNumber();
+        }
+
+        @Override
+        public boolean accept(CharSequence line) throws Exception {
+            boolean ret = interpret(line);
+            if (!ret && diagnostics == null) {
+                failedLine = line.toString();
+            }
+            return ret;
+        }
+
+        abstract boolean interpret(CharSequence line) throws Exception;
+    }
+
+    private abstract static class Stitcher<C extends Chunk> {
+        int lines;
+        boolean headerRead, lastHole;
+        float lastX, lastY;
+        CoordinateFormat format = CoordinateFormat.DECIMAL_POINT;
+
+        abstract C newChunk(ByteBuffer buffer, int from, int to);
+
+        abstract void stitch(C chunk);
+    }
+
+    private class TokenChunk extends Chunk {
+        final List<Token> tokens = new ArrayList<>();
+        final XNCByteReader.LineConsumer consumer = XNCByteReader.tokensConsumer(lexer, tokens);
+
+        TokenChunk(ByteBuffer buffer, int from, int to) {
+            super(buffer, from, to);
+        }
+
+        @Override
+        boolean interpret(CharSequence line) throws Exception {
+            return consumer.accept(line);
+        }
+    }
+
+    private class TokenStitcher extends Stitcher<TokenChunk> {
+        final List<Token> tokens = new ArrayList<>();
+
+        @Override
+        TokenChunk newChunk(ByteBuffer buffer, int from, int to) {
+            return new TokenChunk(buffer, from, to);
+        }
+
+        @Override
+        void stitch(TokenChunk chunk) {
+            tokens.addAll(chunk.tokens);
+        }
+    }
+
+    /**
+     * The holes of a chunk that share the same tool instruction. A segment either inherits the tool of the
+     * previous chunk, selects a tool by id, or has no tool. The tools defined by the chunk are attached to the
+     * segment that follows them
+     */
+    private static class Segment {
+        final boolean inherit;
+        final String selectId;
+        final List<Tool> tools = new ArrayList<>();
+        boolean empty = true;
+
+        Segment(boolean inherit, String selectId) {
+            this.inherit = inherit;
+            this.selectId = selectId;
+        }
+    }
+
+    /**
+     * Keeps the holes in a local table where the index of the tool is the index of the segment
+     */
+    private class TableChunk extends Chunk {
+        final DrillHoleTable holes = new DrillHoleTable();
+        final List<Segment> segments = new ArrayList<>();
+        Segment segment = new Segment(true, null);
+
+        TableChunk(ByteBuffer buffer, int from, int to) {
+            super(buffer, from, to);
+            segments.add(segment);
+        }
+
+        @Override
+        boolean interpret(CharSequence line) {
+            Tokens token = lexer.lex(line);
+            if (token == Tokens.drill) {
+                holes.add(lexer.getX(), lexer.getY(), segments.size() - 1);
+                segment.empty = false;
+            } else if (token == Tokens.repeat) {
+                for (int i = 1; i <= lexer.getCount(); i++) {
+                    holes.add(RepeatHole.position(lexer.getX(), lexer.getStepX(), i),
+                            RepeatHole.position(lexer.getY(), lexer.getStepY(), i), segments.size() - 1);
+                }
+                segment.empty = false;
+            } else if (token == Tokens.select) {
+                startSegment(new Segment(false, lexer.getText()));
+            } else if (token != null) {
+                if (segment.inherit || segment.selectId != null || !segment.empty) {
+                    startSegment(new Segment(false, null));
+                }
+                if (token == Tokens.tool) {
+                    segment.tools.add(new Tool(lexer.getText(), lexer.getValue()));
+                }
+            }
+            return token != null;
+        }
+
+        private void startSegment(Segment next) {
+            segment = next;
+            segments.add(next);
+        }
+    }
+
+    private class TableStitcher extends Stitcher<TableChunk> {
+        final DrillHoleTable table = new DrillHoleTable();
+        int selected = -1;
+
+        @Override
+        TableChunk newChunk(ByteBuffer buffer, int from, int to) {
+            return new TableChunk(buffer, from, to);
+        }
+
+        @Override
+        void stitch(TableChunk chunk) {
+            int[] resolved = new int[chunk.segments.size()];
+            for (int i = 0; i < resolved.length; i++) {
+                Segment segment = chunk.segments.get(i);
+                for (Tool tool : segment.tools) {
+                    table.addTool(tool);
+                }
+                if (segment.selectId != null) {
+                    selected = table.indexOfTool(segment.selectId);
+                } else if (!segment.inherit) {
+                    selected = -1;
+                }
+                resolved[i] = selected;
+            }
+            DrillHoleTable holes = chunk.holes;
+            for (int i = 0; i < holes.size(); i++) {
+                table.add(holes.getX(i), holes.getY(i), resolved[holes.getToolIndex(i)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.util.List;
+
+/**
+ * The tokens of a XNC content together with the status collected while they were parsed. The table of the
+ * holes and the spatial index over them are built from the tokens the first time they are asked for
+ *
+ * @author Petre Maierean
+ */
+public class XNCParseResult {
+    private final List<Token> tokens;
+    private final RN1PrinterStatus status;
+    private DrillHoleTable table;
+    private DrillHoleIndex index;
+
+    public XNCParseResult(List<Token> tokens, RN1PrinterStatus status) {
+        this.tokens = tokens;
+        this.status = status;
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Get the bounds, the tool definitions and the number of holes of each tool
+     *
+     * @return
+     */
+    public RN1PrinterStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the holes of the tokens, with the repeats expanded
+     *
+     * @return
+     * @throws Exception
+     */
+    public synchronized DrillHoleTable getTable() throws Exception {
+        if (table == null) {
+            int holes = 0;
+            if (status != null && status.getHoleCounts() != null) {
+                for (int count : status.getHoleCounts().values()) {
+                    holes += count;
+                }
+            }
+            DrillHoleTable ret = new DrillHoleTable(holes);
+            XNCTokenListHandler.replay(tokens, new DrillHoleTable.Filler(ret));
+            table = ret;
+        }
+        return table;
+    }
+
+    /**
+     * Get the spatial index over the holes of the table
+     *
+     * @return
+     * @throws Exception
+     */
+    public synchronized DrillHoleIndex getIndex() throws Exception {
+        if (index == null) {
+            index = new DrillHoleIndex(getTable());
+        }
+        return index;
+    }
+}
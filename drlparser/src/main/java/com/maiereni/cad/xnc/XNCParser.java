@@ -17,16 +17,20 @@
  */
 package com.maiereni.cad.xnc;
 
-import com.maiereni.cad.xnc.bo.*;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A parser of XNC Content
@@ -35,8 +39,11 @@ import java.util.regex.Pattern;
  */
 public class XNCParser {
     private static final Logger logger = LogManager.getLogger(XNCParser.class);
-    private static final List<Tokens> TOKENS = initTokens();
-    private Float offsetX, offsetY;
+    private static final long MAPPING_WINDOW = 1L << 30;
+    private Float offsetX = 0f, offsetY = 0f;
+    private XNCDiagnostics diagnostics;
+    private XNCLineIndex lineIndex;
+    private XNCLineScanner lineScanner = XNCLineScanner.getDefault();
 
     /**
      * Read the content of a string
@@ -55,7 +62,8 @@ public class XNCParser {
     }
 
     /**
-     * Parse the content of a XNC file
+     * Parse the content of a XNC file, which is decompressed on the fly if it is gzip compressed. The file is
+     * decoded as ISO-8859-1 instead of the platform charset
      *
      * @param f
      * @return
@@ -68,170 +76,277 @@ public class XNCParser {
         if (!f.isFile()) {
             throw new Exception("No file can be found at " + f.getPath());
         }
-        try (FileReader fr = new FileReader(f)) {
-            return parse(fr);
+        try (FileInputStream fis = new FileInputStream(f)) {
+            return parse(fis);
         }
     }
 
     /**
-     * Read the content of a reader
+     * Parse XNC content from a stream, which is decompressed on the fly if it is gzip compressed and decoded
+     * as ISO-8859-1
      *
-     * @param reader
+     * @param is
      * @return
      * @throws Exception
      */
-    public List<Token> parse(Reader reader) throws Exception {
-        List<Token> ret = null;
-        try (LineNumberReader lnr = new LineNumberReader(reader)) {
-            ret = new ArrayList<>();
-            String s = null;
-            for (int lineNumber = 1; (s = lnr.readLine()) != null; lineNumber++) {
-                if (s.startsWith(";")) {
-                    continue;
-                }
-                Token token = parseToken(s);
-                if (token == null) {
-                    throw new Exception("Cannot interpret token '" + s + "' at line " + lineNumber);
-                }
-                ret.add(token);
-            }
+    public List<Token> parse(InputStream is) throws Exception {
+        try (Reader reader = XNCArchiveParser.openReader(is)) {
+            return parse(reader);
         }
-        return ret;
     }
 
-    private Token parseToken(String s) throws Exception {
-        Token ret = null;
-        Tokens token = match(s);
-        if (token != null) {
-            switch (token) {
-                case drill:
-                    ret = parseDrillHole(s);
-                    break;
-                case move:
-                    ret = parseMove(s);
-                    break;
-                case select:
-                    ret = parseSelect(s);
-                    break;
-                case tool:
-                    ret = parseTool(s);
-                    break;
-                case format:
-                    ret = parseFormat(s);
-                    break;
-                case setDrillMode:
-                    ret = parseDrillMode(s);
-                    break;
-                default:
-                    ret = token.getInstance();
-            }
+    /**
+     * Parse the content of a XNC file by mapping it in memory. The bytes are interpreted as ASCII characters
+     * and lexed in place, without decoding them and without creating a String per line. Files larger than the
+     * mapping window are mapped one window at a time
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public List<Token> parseMapped(File f) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
         }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        List<Token> ret = new ArrayList<>();
+        readMapped(f, new XNCByteReader(XNCByteReader.tokensConsumer(createLexer(), ret), 0, diagnostics));
         return ret;
     }
 
-    private DrillHole parseDrillHole(String s) {
-        DrillHole ret = null;
-        Pattern pattern = Pattern.compile(DrillHole.PATTERN);
-        Matcher matcher = pattern.matcher(s);
-        if (matcher.matches()) {
-            try {
-                float x = Float.parseFloat(matcher.group(1));
-                float y = Float.parseFloat(matcher.group(5));
-                x += offsetX;
-                y += offsetY;
-                ret = new DrillHole(x, y);
-            } catch (Exception e) {
-
+    /**
+     * Parse the content of a reader and collect the status of the printer in the same pass
+     *
+     * @param reader
+     * @return
+     * @throws Exception
+     */
+    public XNCParseResult parseWithStatus(Reader reader) throws Exception {
+        List<Token> tokens = new ArrayList<>();
+        try (XNCTokenIterator iterator = iterator(reader)) {
+            while (iterator.hasNext()) {
+                tokens.add(iterator.next());
             }
+            return new XNCParseResult(tokens, iterator.getStatus());
         }
-        return ret;
     }
 
-    private Move parseMove(String s) {
-        Move ret = null;
-        Pattern pattern = Pattern.compile(Move.PATTERN);
-        Matcher matcher = pattern.matcher(s);
-        if (matcher.matches()) {
-            try {
-                float x = Float.parseFloat(matcher.group(1));
-                float y = Float.parseFloat(matcher.group(5));
-                x += offsetX;
-                y += offsetY;
-                ret = new Move(x, y);
-            } catch (Exception e) {
-
+    /**
+     * Parse the content of a XNC file by mapping it in memory and collect the status of the printer in the same
+     * pass
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public XNCParseResult parseMappedWithStatus(File f) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        List<Token> tokens = new ArrayList<>();
+        RN1PrinterStatusCollector collector = new RN1PrinterStatusCollector();
+        XNCByteReader.LineConsumer consumer = XNCByteReader.tokensConsumer(createLexer(), tokens);
+        readMapped(f, new XNCByteReader(line -> {
+            boolean ret = consumer.accept(line);
+            if (ret) {
+                collector.accept(tokens.get(tokens.size() - 1));
             }
+            return ret;
+        }, 0, diagnostics));
+        return new XNCParseResult(tokens, collector.getStatus());
+    }
+
+    /**
+     * Parse the content of a XNC file into a table of drill holes. The file is read by mapping it in memory
+     * and no token is created for the drill holes
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public DrillHoleTable parseTable(File f) throws Exception {
+        if (f == null) {
+            throw new Exception("The argument cannot be null");
         }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        DrillHoleTable ret = new DrillHoleTable();
+        parse(f, new DrillHoleTable.Filler(ret));
         return ret;
     }
 
-    private SelectTool parseSelect(String s) {
-        SelectTool ret = null;
-        Pattern pattern = Pattern.compile(SelectTool.PATTERN);
-        Matcher matcher = pattern.matcher(s);
-        if (matcher.matches()) {
-            ret = new SelectTool(s.substring(1));
+    /**
+     * Parse the content of a reader into a table of drill holes. No token is created for the drill holes
+     *
+     * @param reader
+     * @return
+     * @throws Exception
+     */
+    public DrillHoleTable parseTable(Reader reader) throws Exception {
+        if (reader == null) {
+            throw new Exception("The argument cannot be null");
         }
+        DrillHoleTable ret = new DrillHoleTable();
+        parse(reader, new DrillHoleTable.Filler(ret));
         return ret;
     }
 
-    private Tool parseTool(String s) {
-        Tool ret = null;
-        Pattern pattern = Pattern.compile(Tool.PATTERN);
-        Matcher matcher = pattern.matcher(s);
-        if (matcher.matches()) {
-            try {
-                String id = matcher.group(1);
-                float diameter = Float.parseFloat(matcher.group(2));
-                ret = new Tool(id, diameter);
-            } catch (Exception e) {
-
+    /**
+     * Parse the content of a reader and pass it to a handler, one line at a time
+     *
+     * @param reader
+     * @param handler
+     * @throws Exception
+     */
+    public void parse(Reader reader, XNCHandler handler) throws Exception {
+        if (reader == null || handler == null) {
+            throw new Exception("Neither argument can be null");
+        }
+        XNCLexer lexer = createLexer();
+        try (LineNumberReader lnr = new LineNumberReader(reader)) {
+            String s = null;
+            while ((s = lnr.readLine()) != null) {
+                if (s.startsWith(";")) {
+                    continue;
+                }
+                if (lexer.lex(s, handler) == null) {
+                    XNCDiagnostics.reject(diagnostics, s, lnr.getLineNumber(), -1);
+                }
             }
         }
-        return ret;
     }
 
-    private Format parseFormat(String s) {
-        Format ret = null;
-        Pattern pattern = Pattern.compile(Format.PATTERN);
-        Matcher matcher = pattern.matcher(s);
-        if (matcher.matches()) {
-            ret = new Format(s.substring(4));
+    /**
+     * Parse the content of a XNC file and pass it to a handler. The file is mapped in memory and the lines are
+     * lexed in place, so nothing is allocated for a drill hole or a move unless the handler does it
+     *
+     * @param f
+     * @param handler
+     * @throws Exception
+     */
+    public void parse(File f, XNCHandler handler) throws Exception {
+        if (f == null || handler == null) {
+            throw new Exception("Neither argument can be null");
         }
+        if (!f.isFile()) {
+            throw new Exception("No file can be found at " + f.getPath());
+        }
+        readMapped(f, new XNCByteReader(XNCByteReader.handlerConsumer(createLexer(), handler), 0, diagnostics));
+    }
+
+    /**
+     * Parse the content of a XNC file on the common fork join pool. The file is mapped in memory and split in
+     * chunks which are parsed concurrently. The result is the same as the one of parse
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public List<Token> parseParallel(File f) throws Exception {
+        return createParallelParser().parse(f);
+    }
+
+    /**
+     * Parse the content of a XNC file into a table of drill holes on the common fork join pool
+     *
+     * @param f
+     * @return
+     * @throws Exception
+     */
+    public DrillHoleTable parseTableParallel(File f) throws Exception {
+        return createParallelParser().parseTable(f);
+    }
 
+    /**
+     * Read the content of a reader
+     *
+     * @param reader
+     * @return
+     * @throws Exception
+     */
+    public List<Token> parse(Reader reader) throws Exception {
+        List<Token> ret = new ArrayList<>();
+        parse(reader, new XNCTokenListHandler(ret));
         return ret;
     }
 
-    private SetDrillMode parseDrillMode(String s) {
-        SetDrillMode ret = null;
-        Pattern pattern = Pattern.compile(SetDrillMode.PATTERN);
-        Matcher matcher = pattern.matcher(s);
-        if (matcher.matches()) {
-            ret = new SetDrillMode(s.substring(1));
+    /**
+     * Get an iterator that reads the tokens of a reader lazily. The iterator must be closed once it is no
+     * longer needed
+     *
+     * @param reader
+     * @return
+     * @throws Exception
+     */
+    public XNCTokenIterator iterator(Reader reader) throws Exception {
+        if (reader == null) {
+            throw new Exception("The argument cannot be null");
         }
+        return new XNCTokenIterator(reader, createLexer(), diagnostics);
+    }
 
-        return ret;
+    /**
+     * Get a sequential stream of the tokens of a reader. The reader is read as the stream is consumed and it is
+     * closed when the stream is closed
+     *
+     * @param reader
+     * @return
+     * @throws Exception
+     */
+    public Stream<Token> stream(Reader reader) throws Exception {
+        XNCTokenIterator iterator = iterator(reader);
+        Spliterator<Token> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
-    private Tokens match(String s) {
-        Tokens ret = null;
-        for (Tokens token : TOKENS) {
-            if (s.matches(token.getPattern())) {
-                ret = token;
-                break;
+    private void readMapped(File f, XNCByteReader byteReader) throws Exception {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (lineIndex != null) {
+                lineIndex.clear();
+                byteReader.setLineIndex(lineIndex);
+            }
+            byteReader.setScanner(lineScanner);
+            for (long position = 0; position < size; ) {
+                long length = Math.min(size - position, MAPPING_WINDOW);
+                boolean complete = position + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                byteReader.setOffset(position);
+                int read = byteReader.read(buffer, 0, (int) length, complete);
+                if (read == 0) {
+                    throw new Exception("The line at " + (byteReader.getLineNumber() + 1) + " is too long");
+                }
+                position += read;
+            }
+            if (lineIndex != null) {
+                lineIndex.setLength(size);
             }
         }
-        return ret;
     }
 
-    private static List<Tokens> initTokens() {
-        List<Tokens> ret = new ArrayList<>();
-        for (Tokens token : Tokens.values()) {
-            ret.add(token);
-        }
+    private XNCParallelParser createParallelParser() {
+        XNCParallelParser ret = new XNCParallelParser(this::createLexer);
+        ret.setDiagnostics(diagnostics);
         return ret;
     }
 
+    private XNCLexer createLexer() {
+        return new XNCLexer(offsetX == null ? 0f : offsetX, offsetY == null ? 0f : offsetY);
+    }
+
     public Float getOffsetX() {
         return offsetX;
     }
@@ -247,4 +362,47 @@ public class XNCParser {
     public void setOffsetY(Float offsetY) {
         this.offsetY = offsetY;
     }
+
+    public XNCDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Make the parser lenient. The lines that cannot be interpreted are recorded in the diagnostics and skipped
+     * instead of failing the parse. The offsets are only known when the content is read as bytes, from a mapped
+     * file or in parallel
+     *
+     * @param diagnostics the collector or null to fail on the first line that cannot be interpreted
+     */
+    public void setDiagnostics(XNCDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public XNCLineIndex getLineIndex() {
+        return lineIndex;
+    }
+
+    /**
+     * Make the parser fill an index of the lines of the file it maps in memory and reads sequentially, as it
+     * reads them. The index is cleared at the start of every such parse, so it holds the lines of the last file
+     *
+     * @param lineIndex the index or null to not index the lines
+     */
+    public void setLineIndex(XNCLineIndex lineIndex) {
+        this.lineIndex = lineIndex;
+    }
+
+    public XNCLineScanner getLineScanner() {
+        return lineScanner;
+    }
+
+    /**
+     * Set the scanner which finds the ends of the lines of the files mapped in memory. The default one uses the
+     * Vector API when it is available
+     *
+     * @param lineScanner
+     */
+    public void setLineScanner(XNCLineScanner lineScanner) {
+        this.lineScanner = lineScanner;
+    }
 }
@@ -0,0 +1,107 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+/**
+ * A handler which keeps track of the tool the holes belong to. A hole belongs to the tool selected last, unless
+ * another instruction has been met since the selection, which is how ToolPathGenerator assigns the holes to the
+ * tools. Every instruction other than a selection or a hole clears the selection, so a subclass which overrides
+ * one of them calls the method of this class
+ *
+ * @param <T> what a selection resolves to, for example the holes of the tool
+ * @author Petre Maierean
+ */
+public abstract class XNCSelectionHandler<T> implements XNCHandler {
+    private T selected;
+
+    /**
+     * Resolve the id of a selected tool
+     *
+     * @param id
+     * @return what the holes which follow belong to, or null if they belong to no tool
+     */
+    protected abstract T resolve(String id);
+
+    /**
+     * Get what the current holes belong to
+     *
+     * @return the resolved selection, or null if there is none
+     */
+    protected T getSelected() {
+        return selected;
+    }
+
+    protected void setSelected(T selected) {
+        this.selected = selected;
+    }
+
+    @Override
+    public void onSelect(String id) {
+        selected = resolve(id);
+    }
+
+    @Override
+    public void onStartHeader() {
+        selected = null;
+    }
+
+    @Override
+    public void onFormat(String parameters) {
+        selected = null;
+    }
+
+    @Override
+    public void onMetric(String parameters) {
+        selected = null;
+    }
+
+    @Override
+    public void onTool(String id, float diameter) throws Exception {
+        selected = null;
+    }
+
+    @Override
+    public void onHeaderEnd() {
+        selected = null;
+    }
+
+    @Override
+    public void onDrillMode(String mode) {
+        selected = null;
+    }
+
+    @Override
+    public void onMove(float x, float y) {
+        selected = null;
+    }
+
+    @Override
+    public void onPlunge() {
+        selected = null;
+    }
+
+    @Override
+    public void onLift() {
+        selected = null;
+    }
+
+    @Override
+    public void onEndFile() {
+        selected = null;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator that reads the tokens of a XNC content lazily, one line at a time. Only the current line is
+ * kept in memory. A line that cannot be interpreted raises an IllegalStateException, unless there are
+ * diagnostics to record it in, and a failure to read raises an UncheckedIOException. The status of the
+ * printer is collected as the tokens are read
+ *
+ * @author Petre Maierean
+ */
+public class XNCTokenIterator implements Iterator<Token>, Closeable {
+    private final LineNumberReader reader;
+    private final XNCLexer lexer;
+    private final RN1PrinterStatusCollector collector = new RN1PrinterStatusCollector();
+    private final XNCDiagnostics diagnostics;
+    private Token next;
+    private boolean done;
+
+    public XNCTokenIterator(Reader reader, XNCLexer lexer) {
+        this(reader, lexer, null);
+    }
+
+    /**
+     * Create an iterator which records the lines that cannot be interpreted and skips them, if the diagnostics
+     * are not null
+     *
+     * @param reader
+     * @param lexer
+     * @param diagnostics
+     */
+    public XNCTokenIterator(Reader reader, XNCLexer lexer, XNCDiagnostics diagnostics) {
+        this.reader = new LineNumberReader(reader);
+        this.lexer = lexer;
+        this.diagnostics = diagnostics;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            next = readToken();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Token ret = next;
+        next = null;
+        return ret;
+    }
+
+    /**
+     * Get the number of the line last read
+     *
+     * @return
+     */
+    public int getLineNumber() {
+        return reader.getLineNumber();
+    }
+
+    /**
+     * Get the status collected from the tokens read so far
+     *
+     * @return
+     */
+    public RN1PrinterStatus getStatus() {
+        return collector.getStatus();
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        reader.close();
+    }
+
+    private Token readToken() {
+        Token ret = null;
+        try {
+            String s = null;
+            while (ret == null && (s = reader.readLine()) != null) {
+                if (s.startsWith(";")) {
+                    continue;
+                }
+                ret = lexer.nextToken(s);
+                if (ret == null) {
+                    if (diagnostics == null) {
+                        throw new IllegalStateException("Cannot interpret token '" + s + "' at line " +
+                                reader.getLineNumber());
+                    }
+                    diagnostics.add(reader.getLineNumber(), -1, s);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (ret == null) {
+            done = true;
+        } else {
+            collector.accept(ret);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.*;
+
+import java.util.List;
+
+/**
+ * A handler that converts the callbacks back into tokens. The repeats are kept as patterns. The reverse, from
+ * tokens to callbacks, is done by replay
+ *
+ * @author Petre Maierean
+ */
+public class XNCTokenListHandler implements XNCHandler {
+    private final List<Token> tokens;
+
+    public XNCTokenListHandler(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public void onStartHeader() {
+        tokens.add(new StartHeader());
+    }
+
+    @Override
+    public void onFormat(String parameters) {
+        tokens.add(new Format(parameters));
+    }
+
+    @Override
+    public void onMetric(String parameters) {
+        tokens.add(new MetricUnits(parameters));
+    }
+
+    @Override
+    public void onTool(String id, float diameter) {
+        tokens.add(new Tool(id, diameter));
+    }
+
+    @Override
+    public void onHeaderEnd() {
+        tokens.add(new EndHeader());
+    }
+
+    @Override
+    public void onDrillMode(String mode) {
+        tokens.add(new SetDrillMode(mode));
+    }
+
+    @Override
+    public void onSelect(String id) {
+        tokens.add(new SelectTool(id));
+    }
+
+    @Override
+    public void onDrill(float x, float y) {
+        tokens.add(new DrillHole(x, y));
+    }
+
+    @Override
+    public void onMove(float x, float y) {
+        tokens.add(new Move(x, y));
+    }
+
+    @Override
+    public void onRepeat(float x, float y, int count, float stepX, float stepY) {
+        tokens.add(new RepeatHole(x, y, count, stepX, stepY));
+    }
+
+    @Override
+    public void onPlunge() {
+        tokens.add(new PlungeRuteToolDown());
+    }
+
+    @Override
+    public void onLift() {
+        tokens.add(new LiftRuteToolUp());
+    }
+
+    @Override
+    public void onEndFile() {
+        tokens.add(new EndFile());
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Pass the content of tokens to a handler, as the lexer would have passed it while reading them
+     *
+     * @param tokens
+     * @param handler
+     * @throws Exception
+     */
+    public static void replay(Iterable<Token> tokens, XNCHandler handler) throws Exception {
+        for (Token token : tokens) {
+            replay(token, handler);
+        }
+    }
+
+    /**
+     * Pass the content of a token to a handler. A token of an unknown type or null is skipped
+     *
+     * @param token
+     * @param handler
+     * @throws Exception
+     */
+    public static void replay(Token token, XNCHandler handler) throws Exception {
+        if (token instanceof DrillHole) {
+            handler.onDrill(((DrillHole) token).getX(), ((DrillHole) token).getY());
+        } else if (token instanceof RepeatHole) {
+            RepeatHole repeatHole = (RepeatHole) token;
+            handler.onRepeat(repeatHole.getX(), repeatHole.getY(), repeatHole.getCount(), repeatHole.getStepX(),
+                    repeatHole.getStepY());
+        } else if (token instanceof SelectTool) {
+            handler.onSelect(((SelectTool) token).getId());
+        } else if (token instanceof Move) {
+            handler.onMove(((Move) token).getX(), ((Move) token).getY());
+        } else if (token instanceof Tool) {
+            handler.onTool(((Tool) token).getId(), ((Tool) token).getDiameter());
+        } else if (token instanceof SetDrillMode) {
+            handler.onDrillMode(((SetDrillMode) token).getMode());
+        } else if (token instanceof Format) {
+            handler.onFormat(((Format) token).getParameters());
+        } else if (token instanceof MetricUnits) {
+            handler.onMetric(((MetricUnits) token).getParameters());
+        } else if (token instanceof StartHeader) {
+            handler.onStartHeader();
+        } else if (token instanceof EndHeader) {
+            handler.onHeaderEnd();
+        } else if (token instanceof PlungeRuteToolDown) {
+            handler.onPlunge();
+        } else if (token instanceof LiftRuteToolUp) {
+            handler.onLift();
+        } else if (token instanceof EndFile) {
+            handler.onEndFile();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds the line terminators with the Vector API, comparing the bytes of a whole vector register with the line
+ * feed and the carriage return at once. The bytes after the last full vector of a range are scanned one at a
+ * time. Only loaded through XNCLineScanner, when the incubator module is available
+ *
+ * @author Petre Maierean
+ */
+final class XNCVectorLineScanner extends XNCLineScanner {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public int indexOfTerminator(ByteBuffer buffer, int from, int to) {
+        int ret = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        boolean found = false;
+        while (!found && ret < bound) {
+            ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, buffer, ret, ByteOrder.nativeOrder());
+            VectorMask<Byte> terminators = bytes.eq((byte) '\n').or(bytes.eq((byte) '\r'));
+            if (terminators.anyTrue()) {
+                ret += terminators.firstTrue();
+                found = true;
+            } else {
+                ret += SPECIES.length();
+            }
+        }
+        if (!found) {
+            byte b;
+            while (ret < to && (b = buffer.get(ret)) != '\n' && b != '\r') {
+                ret++;
+            }
+        }
+        return ret;
+    }
+}
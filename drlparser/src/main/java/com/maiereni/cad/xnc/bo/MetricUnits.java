@@ -23,7 +23,29 @@ import com.maiereni.cad.xnc.Token;
  * @author Petre Maierean
  */
 public class MetricUnits implements Token {
-    public static final String PATTERN = "METRIC";
+    public static final String PATTERN = "METRIC(,.*)?";
+    private String parameters;
+
+    public MetricUnits() {
+        this(null);
+    }
+
+    public MetricUnits(String parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Get the parameters which follow METRIC, such as TZ,000.000 for trailing zeros and 3.3 digits
+     *
+     * @return the parameters or null
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
 
     @Override
     public String getPattern() {
@@ -31,7 +53,7 @@ public class MetricUnits implements Token {
     }
 
     public String toString() {
-        return PATTERN;
+        return parameters == null ? "METRIC" : "METRIC," + parameters;
     }
 
 }
@@ -0,0 +1,139 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc.bo;
+
+import com.maiereni.cad.xnc.Token;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Repeats the previous hole a number of times, each one moved by a step from the one before, as in
+ * R5X2.54. The token keeps the pattern, not the holes: they are created one at a time when the token is
+ * iterated. The origin is the hole which is repeated and it is not part of the pattern
+ *
+ * @author Petre Maierean
+ */
+public class RepeatHole implements Token, Iterable<DrillHole> {
+    public static final String PATTERN = "R(\\d+)(?=[XY])(X((\\x2D)?(\\d)+\\x2e(\\d)+))?(Y((\\x2D)?(\\d)+\\x2e(\\d)+))?";
+    private float x, y, stepX, stepY;
+    private int count;
+
+    public RepeatHole() {
+        this(0f, 0f, 0, 0f, 0f);
+    }
+
+    public RepeatHole(float x, float y, int count, float stepX, float stepY) {
+        this.x = x;
+        this.y = y;
+        this.count = count;
+        this.stepX = stepX;
+        this.stepY = stepY;
+    }
+
+    /**
+     * Get a coordinate of a repeated hole. All the consumers of the pattern compute the holes with it, so that
+     * they agree on the exact values
+     *
+     * @param origin the coordinate of the hole which is repeated
+     * @param step
+     * @param index the number of the repetition, starting with 1
+     * @return
+     */
+    public static float position(float origin, float step, int index) {
+        return origin + step * index;
+    }
+
+    /**
+     * Get a repeated hole
+     *
+     * @param index the number of the repetition, from 1 to the count
+     * @return
+     */
+    public DrillHole getDrillHole(int index) {
+        if (index < 1 || index > count) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new DrillHole(position(x, stepX, index), position(y, stepY, index));
+    }
+
+    @Override
+    public Iterator<DrillHole> iterator() {
+        return new Iterator<DrillHole>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public DrillHole next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getDrillHole(++index);
+            }
+        };
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public void setX(float x) {
+        this.x = x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public void setY(float y) {
+        this.y = y;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public float getStepX() {
+        return stepX;
+    }
+
+    public void setStepX(float stepX) {
+        this.stepX = stepX;
+    }
+
+    public float getStepY() {
+        return stepY;
+    }
+
+    public void setStepY(float stepY) {
+        this.stepY = stepY;
+    }
+
+    @Override
+    public String getPattern() {
+        return PATTERN;
+    }
+}
@@ -34,7 +34,8 @@ public enum Tokens {
     setDrillMode(SetDrillMode.class),
     start(StartHeader.class),
     tool(Tool.class),
-    format(Format.class);
+    format(Format.class),
+    repeat(RepeatHole.class);
 
     private String pattern;
     private Class<? extends Token> actualToken;
@@ -0,0 +1,120 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the DrillHoleIndex
+ *
+ * @author Petre Maierean
+ */
+public class DrillHoleIndexTest {
+    private static final Logger logger = LogManager.getLogger(DrillHoleIndexTest.class);
+
+    @Test
+    public void testQueriesAsLinearScan() {
+        Random random = new Random(11);
+        DrillHoleTable table = new DrillHoleTable();
+        for (int i = 0; i < 5000; i++) {
+            if (i % 2 == 0) {
+                table.add(random.nextInt(100) / 10f, random.nextInt(100) / 10f, 0);
+            } else {
+                table.add(random.nextFloat() * 10f, random.nextFloat() * 10f, 0);
+            }
+        }
+        DrillHoleIndex index = new DrillHoleIndex(table);
+        assertEquals(table.size(), index.size());
+        for (int i = 0; i < 200; i++) {
+            float x = random.nextFloat() * 12f - 1f, y = random.nextFloat() * 12f - 1f;
+            float w = random.nextFloat() * 3f, h = random.nextFloat() * 3f, r = random.nextFloat() * 2f;
+            assertArrayEquals(scanRectangle(table, x, y, x + w, y + h), sorted(index.findInRectangle(x, y, x + w, y + h)));
+            assertArrayEquals(scanRadius(table, x, y, r), sorted(index.findInRadius(x, y, r)));
+            int k = 1 + random.nextInt(20);
+            int[] nearest = index.findNearest(x, y, k);
+            assertEquals(k, nearest.length);
+            double[] expected = scanDistances(table, x, y);
+            for (int j = 0; j < k; j++) {
+                assertEquals(expected[j], distance2(table, nearest[j], x, y), 0d);
+            }
+        }
+        assertEquals(table.size(), index.findNearest(0f, 0f, table.size() + 10).length);
+        assertEquals(0, index.findInRectangle(1f, 1f, 0f, 0f).length);
+        assertEquals(0, new DrillHoleIndex(new DrillHoleTable()).findNearest(0f, 0f, 3).length);
+    }
+
+    @Test
+    public void testIndexOfParseResult() {
+        String content = "M48\nT1C0.400\nT2C0.800\n%\nT1\nX1.0Y1.0\nR3X1.0\nT2\nX1.0Y5.0\nX4.0Y5.0\nM30";
+        try {
+            XNCParseResult result = new XNCParser().parseWithStatus(new StringReader(content));
+            DrillHoleTable table = result.getTable();
+            assertEquals(6, table.size());
+            DrillHoleIndex index = result.getIndex();
+            assertSame(index, result.getIndex());
+            int[] holes = sorted(index.findInRectangle(0f, 0f, 3f, 2f));
+            assertArrayEquals(new int[]{0, 1, 2}, holes);
+            holes = index.findNearest(3.9f, 4.9f, 2);
+            assertEquals(5, holes[0]);
+            assertEquals(1, table.getToolIndex(holes[0]));
+            assertEquals(4, holes[1]);
+        } catch (Exception e) {
+            logger.error("Failed to index a parse result", e);
+            fail();
+        }
+    }
+
+    private static int[] sorted(int[] holes) {
+        Arrays.sort(holes);
+        return holes;
+    }
+
+    private static int[] scanRectangle(DrillHoleTable table, float minX, float minY, float maxX, float maxY) {
+        return java.util.stream.IntStream.range(0, table.size())
+                .filter(i -> table.getX(i) >= minX && table.getX(i) <= maxX && table.getY(i) >= minY && table.getY(i) <= maxY)
+                .toArray();
+    }
+
+    private static int[] scanRadius(DrillHoleTable table, float x, float y, float r) {
+        return java.util.stream.IntStream.range(0, table.size())
+                .filter(i -> distance2(table, i, x, y) <= (double) r * r)
+                .toArray();
+    }
+
+    private static double[] scanDistances(DrillHoleTable table, float x, float y) {
+        double[] ret = new double[table.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = distance2(table, i, x, y);
+        }
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    private static double distance2(DrillHoleTable table, int i, float x, float y) {
+        double dx = table.getX(i) - x, dy = table.getY(i) - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the DrillHoleTable
+ *
+ * @author Petre Maierean
+ */
+public class DrillHoleTableTest {
+    private static final Logger logger = LogManager.getLogger(DrillHoleTableTest.class);
+    private static final String CONTENT = "M48\nMETRIC\nT1C0.400\nT2C0.800\n%\nG90\nX9.0Y9.0\nT2\nX1.0Y5.0\nX2.0Y-1.0\n" +
+            "T1\nX3.0Y4.0\nX4.0Y4.0\nX5.0Y2.0\nG00X0.0Y0.0\nX6.0Y1.0\nT3\nX7.0Y0.5\nT0\nM30";
+
+    @Test
+    public void testParseTable() {
+        try {
+            XNCParser parser = new XNCParser();
+            DrillHoleTable table = parser.parseTable(new StringReader(CONTENT));
+            assertEquals(2, table.getTools().size());
+            assertEquals(8, table.size());
+            int[] expected = {-1, 1, 1, 0, 0, 0, -1, -1};
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals("Hole " + i, expected[i], table.getToolIndex(i));
+            }
+            List<DrillHole> drillHoles = table.getDrillHoles(table.indexOfTool("1"));
+            assertEquals(3, drillHoles.size());
+            assertTrue(drillHoles.get(2).getX() == 5.0F);
+        } catch (Exception e) {
+            logger.error("Failed to parse into a table", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testSort() {
+        try {
+            DrillHoleTable table = new XNCParser().parseTable(new StringReader(CONTENT));
+            table.sort();
+            float[] x = {7.0F, 6.0F, 9.0F, 5.0F, 3.0F, 4.0F, 2.0F, 1.0F};
+            for (int i = 0; i < x.length; i++) {
+                assertTrue("Hole " + i, table.getX(i) == x[i]);
+            }
+            assertEquals(-1, table.getToolIndex(0));
+            assertEquals(1, table.getToolIndex(7));
+        } catch (Exception e) {
+            logger.error("Failed to sort a table", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testGrowAndSortLarge() {
+        DrillHoleTable table = new DrillHoleTable(1);
+        int size = 100000;
+        for (int i = 0; i < size; i++) {
+            table.add(i, (i * 7919) % 1000 - 500, i % 3);
+        }
+        assertEquals(size, table.size());
+        table.sort();
+        for (int i = 1; i < size; i++) {
+            boolean ordered = table.getToolIndex(i - 1) < table.getToolIndex(i)
+                    || (table.getToolIndex(i - 1) == table.getToolIndex(i) && (table.getY(i - 1) < table.getY(i)
+                    || (table.getY(i - 1) == table.getY(i) && table.getX(i - 1) < table.getX(i))));
+            assertTrue("Hole " + i, ordered);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.Tool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the DrillSetParser
+ *
+ * @author Petre Maierean
+ */
+public class DrillSetParserTest {
+    private static final Logger logger = LogManager.getLogger(DrillSetParserTest.class);
+    private static final String PLATED = "M48\nT1C0.400\nT2C0.800\n%\nT1\nX1.0Y1.0\nX2.0Y2.0\nT2\nX3.0Y3.0\nT9\nX9.0Y9.0\nM30";
+    private static final String NON_PLATED = "M48\nT3C0.400\nT1C3.000\n%\nT1\nX4.0Y4.0\nT3\nX5.0Y5.0\nR2X1.0\nM30";
+
+    @Test
+    public void testMergeByDiameter() {
+        List<File> files = new ArrayList<>();
+        try {
+            files.add(write(PLATED));
+            files.add(write(NON_PLATED));
+            DrillSetParser parser = new DrillSetParser(XNCParser::new);
+            ToolDictionary dictionary = new ToolDictionary();
+            DrillSet drillSet = parser.parse(files, dictionary);
+            assertEquals(2, drillSet.getSources().size());
+            List<Tool> tools = drillSet.getTools();
+            assertEquals(3, tools.size());
+            assertTrue(tools.get(0).getDiameter() == 0.4f);
+            assertTrue(tools.get(2).getDiameter() == 3.0f);
+            assertEquals(5, drillSet.getHoleCount(tools.get(0)));
+            assertEquals(2, drillSet.getHoleCount(tools.get(0), 0));
+            assertEquals(3, drillSet.getHoleCount(tools.get(0), 1));
+            assertTrue(drillSet.getDrillHoles(tools.get(0)).get(2).getX() == 5.0f);
+            assertTrue(drillSet.getDrillHoles(tools.get(0)).get(4).getX() == 7.0f);
+            assertEquals(1, drillSet.getHoleCount(tools.get(1)));
+            assertTrue(drillSet.getDrillHoles(tools.get(2)).get(0).getX() == 4.0f);
+
+            Collections.reverse(files);
+            DrillSet reversed = parser.parse(files, dictionary);
+            assertSame(tools.get(0), reversed.getTools().get(0));
+            assertTrue(reversed.getDrillHoles(tools.get(0)).get(0).getX() == 5.0f);
+            assertEquals(0, reversed.getHoleCount(new Tool("1", 0.4f)));
+
+            DrillSet plated = parser.parse(files.subList(1, 2), dictionary);
+            assertEquals(3, dictionary.size());
+            assertEquals(Arrays.asList(tools.get(0), tools.get(1)), plated.getTools());
+        } catch (Exception e) {
+            logger.error("Failed to parse a drill set", e);
+            fail();
+        } finally {
+            files.forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testRejectsMixedUnits() {
+        List<File> files = new ArrayList<>();
+        try {
+            files.add(write(PLATED.replace("M48\n", "M48\nMETRIC\n")));
+            files.add(write(NON_PLATED.replace("M48\n", "M48\nMETRIC,TZ\n")));
+            ToolDictionary dictionary = new ToolDictionary();
+            assertEquals(3, new DrillSetParser(XNCParser::new).parse(files, dictionary).getTools().size());
+            assertTrue(dictionary.isMetric());
+            files.add(write(PLATED));
+            new DrillSetParser(XNCParser::new).parse(files.subList(2, 3), dictionary);
+            fail();
+        } catch (Exception e) {
+            assertEquals("Cannot parse the file " + files.get(2).getPath()
+                    + ": Cannot add the tool 1 in unspecified units to tools in metric units", e.getMessage());
+        } finally {
+            files.forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testReportsFile() {
+        File f = null;
+        try {
+            f = write("M48\nbad\n");
+            new DrillSetParser(XNCParser::new).parse(Arrays.asList(f));
+            fail();
+        } catch (Exception e) {
+            assertEquals("Cannot parse the file " + f.getPath() + ": Cannot interpret token 'bad' at line 2",
+                    e.getMessage());
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+
+    private static File write(String content) throws Exception {
+        File ret = File.createTempFile("drillset", ".drl");
+        Files.write(ret.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return ret;
+    }
+}
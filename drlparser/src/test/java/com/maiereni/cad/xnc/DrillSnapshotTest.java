@@ -0,0 +1,152 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.Tool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the DrillSnapshotWriter and the DrillSnapshotReader
+ *
+ * @author Petre Maierean
+ */
+public class DrillSnapshotTest {
+    private static final Logger logger = LogManager.getLogger(DrillSnapshotTest.class);
+    private static final String CONTENT = "M48\nMETRIC\nT1C0.400\nT22C0.800\nT333C1.100\n%\nG90\nG05\n" +
+            "T1\nX35.56Y-40.64\nX40.64Y-55.88\nT22\nX48.07Y-58.42\nG05\nX1.0Y2.0\nT333\nX-3.5Y7.25\nT0\nM30";
+
+    @Test
+    public void testWriteAndRead() {
+        File f = null;
+        try {
+            DrillHoleTable table = new XNCParser().parseTable(new StringReader(CONTENT));
+            f = File.createTempFile("sample", ".xncs");
+            new DrillSnapshotWriter().write(table, f);
+            DrillHoleTable read = new DrillSnapshotReader().read(f);
+            assertSameTable(table, read);
+        } catch (Exception e) {
+            logger.error("Failed to write and read a snapshot", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAndReadLarge() {
+        try {
+            DrillHoleTable table = new DrillHoleTable();
+            table.addTool(new Tool("1", 0.4f));
+            for (int i = 0; i < 100000; i++) {
+                table.add(i * 0.01f, -i * 0.02f, i % 3 == 0 ? -1 : 0);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new DrillSnapshotWriter().write(table, Channels.newChannel(out));
+            assertEquals(32 + 12 + 100000 * 12, out.size());
+            DrillHoleTable read = new DrillSnapshotReader().read(ByteBuffer.wrap(out.toByteArray()));
+            assertSameTable(table, read);
+        } catch (Exception e) {
+            logger.error("Failed to write and read a large snapshot", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testReadRejectsOtherContent() {
+        try {
+            new DrillSnapshotReader().read(ByteBuffer.wrap(CONTENT.getBytes()));
+            fail();
+        } catch (Exception e) {
+            assertEquals("The content is not a drill snapshot", e.getMessage());
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new DrillSnapshotWriter().write(new XNCParser().parseTable(new StringReader(CONTENT)),
+                    Channels.newChannel(out));
+            new DrillSnapshotReader().read(ByteBuffer.wrap(out.toByteArray(), 0, out.size() - 1));
+            fail();
+        } catch (Exception e) {
+            assertEquals("The drill snapshot is truncated", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadRejectsCorruptedHeader() {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(write()).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(8, Integer.MAX_VALUE - 1);
+            new DrillSnapshotReader().read(buffer);
+            fail();
+        } catch (Exception e) {
+            assertEquals("The drill snapshot is truncated", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadRejectsWrongHoleCounts() {
+        try {
+            byte[] content = write();
+            ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+            // the hole count of the first tool follows its id "1" and its diameter
+            int position = DrillSnapshotWriter.HEADER_SIZE + 2 + 1 + 4;
+            buffer.putInt(position, buffer.getInt(position) + 1);
+            new DrillSnapshotReader().read(buffer);
+            fail();
+        } catch (Exception e) {
+            assertEquals("The drill snapshot is corrupted", e.getMessage());
+        }
+    }
+
+    private static byte[] write() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DrillSnapshotWriter().write(new XNCParser().parseTable(new StringReader(CONTENT)), Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static void assertSameTable(DrillHoleTable expected, DrillHoleTable actual) {
+        assertEquals(expected.getTools().size(), actual.getTools().size());
+        for (int i = 0; i < expected.getTools().size(); i++) {
+            assertEquals(expected.getTools().get(i).toString(), actual.getTools().get(i).toString());
+            assertEquals(i, actual.indexOfTool(expected.getTools().get(i).getId()));
+            assertEquals(expected.getHoleCount(i), actual.getHoleCount(i));
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.getX(i) == actual.getX(i));
+            assertTrue(expected.getY(i) == actual.getY(i));
+            assertEquals(expected.getToolIndex(i), actual.getToolIndex(i));
+        }
+        assertTrue(expected.getMinX() == actual.getMinX());
+        assertTrue(expected.getMaxY() == actual.getMaxY());
+        actual.add(1f, 1f, 0);
+        assertEquals(expected.size() + 1, actual.size());
+    }
+}
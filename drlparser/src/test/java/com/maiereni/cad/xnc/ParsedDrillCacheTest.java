@@ -0,0 +1,115 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the ParsedDrillCache
+ *
+ * @author Petre Maierean
+ */
+public class ParsedDrillCacheTest {
+    private static final Logger logger = LogManager.getLogger(ParsedDrillCacheTest.class);
+    private static final String CONTENT = "M48\nMETRIC\nT1C0.400\nT2C0.800\n%\nG90\nG05\n" +
+            "T1\nX35.56Y-40.64\nX40.64Y-55.88\nT2\nX48.07Y-58.42\nT0\nM30";
+
+    @Test
+    public void testMemoryTier() {
+        File dir = null;
+        try {
+            dir = Files.createTempDirectory("cache").toFile();
+            File a = write(dir, "a.drl", CONTENT), copy = write(dir, "copy.drl", CONTENT);
+            File b = write(dir, "b.drl", CONTENT.replace("X35.56", "X1.0"));
+            ParsedDrillCache cache = new ParsedDrillCache(new XNCParser(), 200);
+            DrillHoleTable table = cache.get(a);
+            assertEquals(3, table.size());
+            assertSame(table, cache.get(copy));
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+            assertTrue(cache.get(b).getX(0) == 1.0f);
+            assertEquals(2, cache.getMisses());
+            assertEquals(1, cache.getEvictions());
+            assertNotSame(table, cache.get(a));
+            assertEquals(3, cache.getMisses());
+            assertEquals(0, cache.getDiskHits());
+            assertTrue(cache.getBytes() <= 200);
+        } catch (Exception e) {
+            logger.error("Failed to use the memory tier", e);
+            fail();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testDiskTier() {
+        File dir = null;
+        try {
+            dir = Files.createTempDirectory("cache").toFile();
+            File a = write(dir, "a.drl", CONTENT);
+            File snapshots = new File(dir, "snapshots");
+            XNCParser parser = new XNCParser();
+            parser.setOffsetX(2f);
+            DrillHoleTable expected = new ParsedDrillCache(parser, 1 << 20, snapshots).get(a);
+            ParsedDrillCache cache = new ParsedDrillCache(parser, 1 << 20, snapshots);
+            DrillHoleTable table = cache.get(a);
+            assertEquals(1, cache.getDiskHits());
+            assertEquals(0, cache.getMisses());
+            assertEquals(expected.size(), table.size());
+            assertTrue(table.getX(0) == 37.56f);
+            assertSame(table, cache.get(a));
+            assertEquals(1, cache.getHits());
+            parser.setOffsetX(0f);
+            assertTrue(cache.get(a).getX(0) == 35.56f);
+            assertEquals(1, cache.getMisses());
+            assertEquals(2, snapshots.list().length);
+        } catch (Exception e) {
+            logger.error("Failed to use the disk tier", e);
+            fail();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static File write(File dir, String name, String content) throws Exception {
+        File ret = new File(dir, name);
+        Files.write(ret.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return ret;
+    }
+
+    private static void delete(File f) {
+        if (f != null) {
+            File[] children = f.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    delete(child);
+                }
+            }
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the XNCArchiveParser
+ *
+ * @author Petre Maierean
+ */
+public class XNCArchiveParserTest {
+    private static final Logger logger = LogManager.getLogger(XNCArchiveParserTest.class);
+    private static final String TOP = "M48\nT1C0.400\n%\nT1\nX1.0Y1.0\nX2.0Y2.0\nM30";
+    private static final String BOTTOM = "M48\nT1C0.800\nT2C1.000\n%\nT2\nX3.0Y3.0\nR2X1.0\nM30";
+
+    @Test
+    public void testParseGzip() {
+        File f = null;
+        try {
+            byte[] compressed = gzip(TOP);
+            XNCParseResult result = new XNCArchiveParser(XNCParser::new).parse(new ByteArrayInputStream(compressed));
+            assertEquals(new XNCParser().parse(TOP).size(), result.getTokens().size());
+            assertEquals(2, result.getStatus().getHoleCount("1"));
+            f = File.createTempFile("compressed", ".drl.gz");
+            Files.write(f.toPath(), compressed);
+            assertEquals(result.getTokens().size(), new XNCParser().parse(f).size());
+            assertEquals(result.getTokens().size(),
+                    new XNCParser().parse(new ByteArrayInputStream(TOP.getBytes(StandardCharsets.US_ASCII))).size());
+        } catch (Exception e) {
+            logger.error("Failed to parse gzip content", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testParseZip() {
+        File f = null;
+        try {
+            byte[] archive = zip("docs/", null, "readme.txt", "not a drill file".getBytes(StandardCharsets.US_ASCII),
+                    "top.drl", TOP.getBytes(StandardCharsets.US_ASCII), "bottom.XNC.gz", gzip(BOTTOM));
+            XNCArchiveParser parser = new XNCArchiveParser(XNCParser::new);
+            Map<String, XNCParseResult> results = parser.parseZip(new ByteArrayInputStream(archive));
+            assertEquals(List.of("top.drl", "bottom.XNC.gz"), new ArrayList<>(results.keySet()));
+            assertEquals(2, results.get("top.drl").getStatus().getHoleCount("1"));
+            assertEquals(3, results.get("bottom.XNC.gz").getStatus().getHoleCount("2"));
+            f = File.createTempFile("package", ".zip");
+            Files.write(f.toPath(), archive);
+            Map<String, XNCParseResult> fromFile = parser.parseZip(f);
+            assertEquals(results.keySet(), fromFile.keySet());
+            assertEquals(results.get("bottom.XNC.gz").getTokens().size(), fromFile.get("bottom.XNC.gz").getTokens().size());
+        } catch (Exception e) {
+            logger.error("Failed to parse a zip archive", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+        try {
+            byte[] archive = zip("top.drl", TOP.getBytes(StandardCharsets.US_ASCII), "bad.drl",
+                    "M48\nbad".getBytes(StandardCharsets.US_ASCII));
+            new XNCArchiveParser(XNCParser::new).parseZip(new ByteArrayInputStream(archive));
+            fail();
+        } catch (Exception e) {
+            assertEquals("Cannot parse the entry bad.drl: Cannot interpret token 'bad' at line 2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseManyEntries() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            Object[] entries = new Object[40];
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < entries.length; i += 2) {
+                names.add("layer" + i + ".drl");
+                entries[i] = names.get(names.size() - 1);
+                entries[i + 1] = (i % 4 == 0 ? TOP : BOTTOM).getBytes(StandardCharsets.US_ASCII);
+            }
+            Map<String, XNCParseResult> results =
+                    new XNCArchiveParser(XNCParser::new, pool).parseZip(new ByteArrayInputStream(zip(entries)));
+            assertEquals(names, new ArrayList<>(results.keySet()));
+            for (int i = 0; i < names.size(); i++) {
+                XNCParseResult result = results.get(names.get(i));
+                assertEquals(i % 2 == 0 ? 2 : 3, result.getStatus().getHoleCount(i % 2 == 0 ? "1" : "2"));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse an archive of many entries", e);
+            fail();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDuplicateEntries() {
+        File f = null;
+        try {
+            byte[] archive = zip("top.drl", TOP.getBytes(StandardCharsets.US_ASCII), "pop.drl",
+                    BOTTOM.getBytes(StandardCharsets.US_ASCII));
+            // ZipOutputStream refuses duplicate names, so the second name is patched in place
+            String content = new String(archive, StandardCharsets.ISO_8859_1).replace("pop.drl", "top.drl");
+            archive = content.getBytes(StandardCharsets.ISO_8859_1);
+            f = File.createTempFile("duplicates", ".zip");
+            Files.write(f.toPath(), archive);
+            XNCArchiveParser parser = new XNCArchiveParser(XNCParser::new);
+            for (int i = 0; i < 2; i++) {
+                try {
+                    if (i == 0) {
+                        parser.parseZip(new ByteArrayInputStream(archive));
+                    } else {
+                        parser.parseZip(f);
+                    }
+                    fail();
+                } catch (Exception e) {
+                    assertEquals("The archive has more than one entry named top.drl", e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to check the duplicate entries", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+
+    private static byte[] gzip(String content) throws Exception {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(ret)) {
+            os.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return ret.toByteArray();
+    }
+
+    private static byte[] zip(Object... entries) throws Exception {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        try (ZipOutputStream os = new ZipOutputStream(ret)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                os.putNextEntry(new ZipEntry((String) entries[i]));
+                if (entries[i + 1] != null) {
+                    os.write((byte[]) entries[i + 1]);
+                }
+                os.closeEntry();
+            }
+        }
+        return ret.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import com.maiereni.cad.xnc.bo.Tool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the byte level reading of XNC content
+ *
+ * @author Petre Maierean
+ */
+public class XNCByteReaderTest {
+    private static final Logger logger = LogManager.getLogger(XNCByteReaderTest.class);
+    private static final String CONTENT = "M48\n;comment\nMETRIC\nT1C0.400\n%\r\nT1\rX35.56Y-40.64\r\nX40.64Y-55.88\nX1.0Y2.0\nM30";
+
+    @Test
+    public void testReadSplitAnywhere() {
+        try {
+            byte[] bytes = CONTENT.getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            List<Token> expected = new ArrayList<>();
+            new XNCByteReader(new XNCLexer(), expected).read(buffer, 0, bytes.length, true);
+            assertEquals(9, expected.size());
+            for (int split = 0; split <= bytes.length; split++) {
+                List<Token> tokens = new ArrayList<>();
+                XNCByteReader reader = new XNCByteReader(new XNCLexer(), tokens);
+                int read = reader.read(buffer, 0, split, false);
+                reader.read(buffer, read, bytes.length, true);
+                assertEquals("Split at " + split, expected.size(), tokens.size());
+                assertEquals("Split at " + split, 10, reader.getLineNumber());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to read bytes", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testReadReportsLine() {
+        byte[] bytes = "M48\r\nT1C0.400\r\nX1.0\r\n".getBytes(StandardCharsets.US_ASCII);
+        try {
+            new XNCByteReader(new XNCLexer(), new ArrayList<>()).read(ByteBuffer.wrap(bytes), 0, bytes.length, true);
+            fail();
+        } catch (Exception e) {
+            assertEquals("Cannot interpret token 'X1.0' at line 3", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseMappedAsReader() {
+        File f = null;
+        try {
+            f = File.createTempFile("sample", ".drl");
+            Files.write(f.toPath(), CONTENT.getBytes(StandardCharsets.US_ASCII));
+            XNCParser parser = new XNCParser();
+            parser.setOffsetX(1f);
+            List<Token> expected = parser.parse(f);
+            List<Token> tokens = parser.parseMapped(f);
+            assertEquals(expected.size(), tokens.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getClass(), tokens.get(i).getClass());
+            }
+            assertEquals("1", ((Tool) tokens.get(2)).getId());
+            assertTrue(((DrillHole) tokens.get(5)).getX() == 36.56F);
+            assertTrue(((DrillHole) tokens.get(5)).getY() == -40.64F);
+        } catch (Exception e) {
+            logger.error("Failed to parse a mapped file", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+}
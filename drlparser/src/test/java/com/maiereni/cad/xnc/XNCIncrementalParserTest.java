@@ -0,0 +1,138 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import com.maiereni.cad.xnc.bo.RepeatHole;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the XNCIncrementalParser
+ *
+ * @author Petre Maierean
+ */
+public class XNCIncrementalParserTest {
+    private static final Logger logger = LogManager.getLogger(XNCIncrementalParserTest.class);
+    private static final String CONTENT = "M48\n; date 1\nMETRIC\nT1C0.400\nT2C0.800\n%\nG90\nG05\n" +
+            "T1\nX1.0Y1.0\nX2.0Y2.0\nX3.0Y3.0\nT2\nX4.0Y4.0\nX5.0Y5.0\nT0\nM30";
+
+    @Test
+    public void testDelta() {
+        try {
+            XNCIncrementalParser parser = new XNCIncrementalParser();
+            XNCDelta delta = parser.parse(CONTENT);
+            assertEquals(5, delta.getAdded().size());
+            assertEquals(16, delta.getTokens().size());
+
+            delta = parser.parse(CONTENT.replace("; date 1", "; date 2"));
+            assertTrue(delta.isEmpty());
+            assertEquals(0, delta.getRelexedLines());
+
+            String edited = CONTENT.replace("X2.0Y2.0", "X2.5Y2.0").replace("X5.0Y5.0\n", "")
+                    .replace("T2\n", "T2\nX6.0Y6.0\n");
+            delta = parser.parse(edited);
+            assertEquals(2, delta.getRelexedLines());
+            assertEquals(2, delta.getMoved().size());
+            assertEquals("T1 X2.0Y2.0 > X2.5Y2.0", delta.getMoved().get(0).toString());
+            assertEquals("T2 X5.0Y5.0 > X6.0Y6.0", delta.getMoved().get(1).toString());
+            assertEquals(0, delta.getAdded().size());
+            assertEquals(0, delta.getRemoved().size());
+            assertSameTokens(new XNCParser().parse(edited), delta.getTokens());
+
+            String retooled = edited.replace("T2\nX6.0Y6.0", "T1\nX6.0Y6.0");
+            delta = parser.parse(retooled);
+            assertEquals(2, delta.getRemoved().size());
+            assertEquals(2, delta.getAdded().size());
+            assertEquals("1", delta.getAdded().get(0).getToolId());
+            assertEquals("2", delta.getRemoved().get(0).getToolId());
+            assertSameTokens(new XNCParser().parse(retooled), delta.getTokens());
+        } catch (Exception e) {
+            logger.error("Failed to parse incrementally", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testUnitsChange() {
+        try {
+            XNCIncrementalParser parser = new XNCIncrementalParser();
+            parser.parse(CONTENT);
+            String implied = CONTENT.replace("METRIC", "METRIC,TZ").replace("X1.0Y1.0", "X1000Y1000");
+            XNCDelta delta = parser.parse(implied);
+            assertTrue(delta.getRelexedLines() > 10);
+            assertTrue(delta.isEmpty());
+            assertSameTokens(new XNCParser().parse(implied), delta.getTokens());
+            try {
+                parser.parse(implied.replace("X3.0Y3.0", "bad"));
+                fail();
+            } catch (Exception e) {
+                assertEquals("Cannot interpret token 'bad' at line 12", e.getMessage());
+            }
+            assertTrue(parser.parse(implied).isEmpty());
+        } catch (Exception e) {
+            logger.error("Failed to parse a change of units", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testRepeatFollowsItsHole() {
+        try {
+            XNCIncrementalParser parser = new XNCIncrementalParser();
+            String repeated = CONTENT.replace("X3.0Y3.0\n", "X3.0Y3.0\nR2X0.5\n");
+            XNCDelta delta = parser.parse(repeated);
+            assertEquals(7, delta.getAdded().size());
+            String edited = repeated.replace("X3.0Y3.0", "X3.0Y4.0");
+            delta = parser.parse(edited);
+            assertEquals(1, delta.getRelexedLines());
+            assertEquals(3, delta.getMoved().size());
+            assertSameTokens(new XNCParser().parse(edited), delta.getTokens());
+            RepeatHole repeatHole = (RepeatHole) delta.getTokens().get(11);
+            assertTrue(repeatHole.getY() == 4.0f);
+            try {
+                parser.parse(edited.replace("X2.0Y2.0\nX3.0Y4.0\n", "G05\n"));
+                fail();
+            } catch (Exception e) {
+                assertEquals("Cannot interpret token 'R2X0.5' at line 12", e.getMessage());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse repeats incrementally", e);
+            fail();
+        }
+    }
+
+    private static void assertSameTokens(List<Token> expected, List<Token> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+            if (expected.get(i) instanceof DrillHole) {
+                assertTrue(((DrillHole) expected.get(i)).getX() == ((DrillHole) actual.get(i)).getX());
+                assertTrue(((DrillHole) expected.get(i)).getY() == ((DrillHole) actual.get(i)).getY());
+            } else if (expected.get(i) instanceof RepeatHole) {
+                assertTrue(((RepeatHole) expected.get(i)).getX() == ((RepeatHole) actual.get(i)).getX());
+                assertTrue(((RepeatHole) expected.get(i)).getY() == ((RepeatHole) actual.get(i)).getY());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the XNCLineIndex
+ *
+ * @author Petre Maierean
+ */
+public class XNCLineIndexTest {
+    private static final Logger logger = LogManager.getLogger(XNCLineIndexTest.class);
+    private static final String CONTENT = "M48\r\n; comment\nMETRIC\rT1C0.400\r\n%\n\rT1\nX1.0Y1.0\r\nbad\nX2.0Y2.0\nM30";
+
+    @Test
+    public void testIndexAsReadLine() {
+        File f = null;
+        try {
+            f = write(CONTENT);
+            List<String> expected = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new StringReader(CONTENT))) {
+                String s;
+                while ((s = reader.readLine()) != null) {
+                    expected.add(s);
+                }
+            }
+            XNCLineIndex index = XNCLineIndex.build(f);
+            assertEquals(expected.size(), index.getLineCount());
+            assertEquals(expected, index.readLines(f, 1, expected.size()));
+            assertEquals(expected.subList(5, 8), index.readLines(f, 6, 3));
+            assertEquals(expected.subList(9, expected.size()), index.readLines(f, 10, 100));
+            assertEquals(6, index.getLineNumber(index.getStart(6)));
+            assertEquals(7, index.getLineNumber(index.getEnd(7) - 1));
+            assertEquals(0, index.getLineNumber(f.length()));
+            try (BufferedReader reader = new BufferedReader(index.openReader(f, 8))) {
+                assertEquals("X1.0Y1.0", reader.readLine());
+            }
+            try {
+                index.getStart(expected.size() + 1);
+                fail();
+            } catch (Exception e) {
+                assertEquals("The line 12 is not in the index of 11 lines", e.getMessage());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to index the lines", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testParserFillsIndex() {
+        File f = null;
+        try {
+            f = write(CONTENT);
+            XNCParser parser = new XNCParser();
+            parser.setLineIndex(new XNCLineIndex());
+            parser.setDiagnostics(new XNCDiagnostics());
+            parser.parseMapped(f);
+            XNCLineIndex index = parser.getLineIndex();
+            XNCLineIndex built = XNCLineIndex.build(f);
+            assertEquals(built.getLineCount(), index.getLineCount());
+            for (int i = 1; i <= built.getLineCount(); i++) {
+                assertEquals(built.getStart(i), index.getStart(i));
+            }
+            XNCDiagnostic diagnostic = parser.getDiagnostics().getDiagnostics().get(0);
+            assertEquals(diagnostic.getLineNumber(), index.getLineNumber(diagnostic.getOffset()));
+            assertEquals(diagnostic.getLine(), index.readLines(f, diagnostic.getLineNumber(), 1).get(0));
+            parser.parseMapped(f);
+            assertEquals(built.getLineCount(), index.getLineCount());
+        } catch (Exception e) {
+            logger.error("Failed to fill the index while parsing", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+
+    private static File write(String content) throws Exception {
+        File ret = File.createTempFile("lines", ".drl");
+        Files.write(ret.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        return ret;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the XNCLineScanner. The vector scanner is only checked when the JVM runs with the incubator
+ * module
+ *
+ * @author Petre Maierean
+ */
+public class XNCLineScannerTest {
+    private static final Logger logger = LogManager.getLogger(XNCLineScannerTest.class);
+    private static final byte[] ALPHABET = "X1.5Y-2\r\n;%".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testVectorAsScalar() {
+        XNCLineScanner scalar = XNCLineScanner.getScalar(), vector = XNCLineScanner.getVector();
+        if (vector == null) {
+            logger.warn("The Vector API is not available, only the scalar scanner is checked");
+            vector = scalar;
+        }
+        Random random = new Random(17);
+        for (int i = 0; i < 200; i++) {
+            byte[] bytes = new byte[random.nextInt(300)];
+            // long lines and short ones
+            int spread = random.nextBoolean() ? ALPHABET.length : ALPHABET.length - 4;
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = ALPHABET[random.nextInt(spread)];
+            }
+            ByteBuffer heap = ByteBuffer.wrap(bytes);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            for (int from = 0; from < bytes.length; from += 1 + random.nextInt(7)) {
+                int to = from + random.nextInt(bytes.length - from + 1);
+                int expected = scalar.indexOfTerminator(heap, from, to);
+                assertEquals(expected, vector.indexOfTerminator(heap, from, to));
+                assertEquals(expected, vector.indexOfTerminator(direct, from, to));
+            }
+            assertEquals(scalar.countLines(heap, 0, bytes.length), vector.countLines(direct, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void testScannersParseAlike() {
+        File f = null;
+        try {
+            StringBuilder sb = new StringBuilder("M48\r\nMETRIC\nT1C0.400\r%\nT1\n");
+            for (int i = 0; i < 1000; i++) {
+                sb.append(";").append("comment ".repeat(i % 9)).append(i % 3 == 0 ? "\r\n" : "\n");
+                sb.append("X").append(i).append(".5Y-").append(i % 77).append(".25").append(i % 2 == 0 ? "\r" : "\n");
+            }
+            String content = sb.append("M30").toString();
+            f = File.createTempFile("scanner", ".drl");
+            Files.write(f.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+            XNCParser parser = new XNCParser();
+            parser.setLineScanner(XNCLineScanner.getScalar());
+            List<Token> expected = parser.parseMapped(f);
+            parser.setLineScanner(XNCLineScanner.getDefault());
+            assertEquals(expected.size(), parser.parseMapped(f).size());
+            assertEquals(new XNCParser().parse(content).size(), expected.size());
+            assertEquals(content.lines().count(), XNCLineIndex.build(f).getLineCount());
+        } catch (Exception e) {
+            logger.error("Failed to parse with the scanners", e);
+            fail();
+        } finally {
+            if (f != null) {
+                f.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import com.maiereni.cad.xnc.bo.DrillHole;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the XNCParallelParser
+ *
+ * @author Petre Maierean
+ */
+public class XNCParallelParserTest {
+    private static final Logger logger = LogManager.getLogger(XNCParallelParserTest.class);
+    private static final String[] TERMINATORS = {"\n", "\r\n", "\r"};
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @Test
+    public void testParseAsSequential() {
+        try {
+            String content = generate(new Random(3), 2000);
+            XNCParser parser = new XNCParser();
+            List<Token> expected = parser.parse(content);
+            for (int chunkSize : new int[]{1, 7, 100, 4096, 1 << 20}) {
+                XNCParallelParser parallelParser = new XNCParallelParser(XNCLexer::new, pool, chunkSize);
+                List<Token> tokens = parallelParser.parse(toBuffer(content));
+                assertEquals(expected.size(), tokens.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getClass(), tokens.get(i).getClass());
+                    if (expected.get(i) instanceof DrillHole) {
+                        assertTrue(((DrillHole) expected.get(i)).getX() == ((DrillHole) tokens.get(i)).getX());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse in parallel", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testParseTableAsSequential() {
+        try {
+            String content = generate(new Random(5), 5000);
+            DrillHoleTable expected = new XNCParser().parseTable(new StringReader(content));
+            for (int chunkSize : new int[]{1, 13, 256, 1 << 20}) {
+                XNCParallelParser parallelParser = new XNCParallelParser(XNCLexer::new, pool, chunkSize);
+                DrillHoleTable table = parallelParser.parseTable(toBuffer(content));
+                assertEquals(expected.getTools().size(), table.getTools().size());
+                assertEquals(expected.size(), table.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertTrue(expected.getX(i) == table.getX(i));
+                    assertTrue(expected.getY(i) == table.getY(i));
+                    assertEquals("Chunk size " + chunkSize + " hole " + i, expected.getToolIndex(i), table.getToolIndex(i));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse a table in parallel", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testReportsFirstError() {
+        String content = generate(new Random(7), 1000) + "\nX1.0\nbad\n";
+        String expected = null;
+        try {
+            new XNCParser().parse(content);
+            fail();
+        } catch (Exception e) {
+            expected = e.getMessage();
+        }
+        try {
+            new XNCParallelParser(XNCLexer::new, pool, 64).parse(toBuffer(content));
+            fail();
+        } catch (Exception e) {
+            assertEquals(expected, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseImpliedDecimal() {
+        try {
+            StringBuilder sb = new StringBuilder("M48\nMETRIC,LZ,000.000\nT1C0.400\n%\nT1\n");
+            for (int i = 0; i < 3000; i++) {
+                sb.append(String.format("X%06dY-%06d\n", i * 7, i * 3));
+            }
+            String content = sb.append("M30").toString();
+            XNCParallelParser parallelParser = new XNCParallelParser(XNCLexer::new, pool, 256);
+            DrillHoleTable table = parallelParser.parseTable(toBuffer(content));
+            DrillHoleTable expected = new XNCParser().parseTable(new StringReader(content));
+            assertEquals(3000, table.size());
+            assertEquals(expected.size(), table.size());
+            for (int i = 0; i < table.size(); i++) {
+                assertTrue(expected.getX(i) == table.getX(i));
+                assertTrue(expected.getY(i) == table.getY(i));
+            }
+            assertTrue(table.getX(2999) == 20.993f);
+        } catch (Exception e) {
+            logger.error("Failed to parse implied decimals in parallel", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testParseFormatAfterHeader() {
+        try {
+            StringBuilder sb = new StringBuilder("M48\nMETRIC,TZ\nT1C0.400\nT1\n");
+            for (int i = 0; i < 3000; i++) {
+                if (i == 2000) {
+                    sb.append("METRIC,LZ,000.000\n");
+                }
+                sb.append(i < 2000 ? String.format("X%dY-%d\n", i * 7, i * 3)
+                        : String.format("X%06dY%03d\n", i, i % 1000));
+            }
+            String content = sb.append("M30").toString();
+            List<Token> expected = new XNCParser().parse(content);
+            DrillHoleTable expectedTable = new XNCParser().parseTable(new StringReader(content));
+            assertEquals(3000, expectedTable.size());
+            for (int chunkSize : new int[]{1, 64, 1 << 20}) {
+                XNCParallelParser parallelParser = new XNCParallelParser(XNCLexer::new, pool, chunkSize);
+                List<Token> tokens = parallelParser.parse(toBuffer(content));
+                assertEquals(expected.size(), tokens.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getClass(), tokens.get(i).getClass());
+                    if (expected.get(i) instanceof DrillHole) {
+                        assertTrue(((DrillHole) expected.get(i)).getX() == ((DrillHole) tokens.get(i)).getX());
+                        assertTrue(((DrillHole) expected.get(i)).getY() == ((DrillHole) tokens.get(i)).getY());
+                    }
+                }
+                DrillHoleTable table = parallelParser.parseTable(toBuffer(content));
+                assertEquals(expectedTable.size(), table.size());
+                for (int i = 0; i < table.size(); i++) {
+                    assertTrue(expectedTable.getX(i) == table.getX(i));
+                    assertTrue(expectedTable.getY(i) == table.getY(i));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse a format declared without the end of the header", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testLenientParseAsSequential() {
+        try {
+            String content = generate(new Random(11), 3000).replace("G05", "G0X");
+            byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+            XNCDiagnostics expected = new XNCDiagnostics(1000);
+            XNCByteReader reader = new XNCByteReader(XNCByteReader.tokensConsumer(new XNCLexer(),
+                    new ArrayList<>()), 0, expected);
+            reader.read(ByteBuffer.wrap(bytes), 0, bytes.length, true);
+            assertTrue(expected.getCount() > 10);
+            for (int chunkSize : new int[]{1, 100, 1 << 20}) {
+                XNCParallelParser parallelParser = new XNCParallelParser(XNCLexer::new, pool, chunkSize);
+                parallelParser.setDiagnostics(new XNCDiagnostics(1000));
+                parallelParser.parseTable(toBuffer(content));
+                XNCDiagnostics diagnostics = parallelParser.getDiagnostics();
+                assertEquals(expected.getCount(), diagnostics.getCount());
+                for (int i = 0; i < expected.getCount(); i++) {
+                    XNCDiagnostic e = expected.getDiagnostics().get(i), d = diagnostics.getDiagnostics().get(i);
+                    assertEquals(e.toString(), d.toString());
+                    assertEquals('G', bytes[(int) d.getOffset()]);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse leniently in parallel", e);
+            fail();
+        }
+    }
+
+    private static ByteBuffer toBuffer(String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String generate(Random random, int lines) {
+        StringBuilder sb = new StringBuilder("M48\nMETRIC\nT1C0.400\nT2C0.800\nT3C1.000\n%\nG90\n");
+        boolean hole = false;
+        for (int i = 0; i < lines; i++) {
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                sb.append("T").append(random.nextInt(5));
+            } else if (kind == 4 && hole) {
+                sb.append("R").append(1 + random.nextInt(5)).append("X").append(random.nextInt(100) / 100f);
+            } else if (kind == 1) {
+                sb.append("G05");
+            } else if (kind == 2) {
+                sb.append("; comment");
+            } else if (kind == 3) {
+                sb.append("T").append(4 + random.nextInt(3)).append("C1.5");
+            } else {
+                sb.append("X").append(random.nextInt(10000) / 100f).append("Y-").append(random.nextInt(10000) / 100f);
+            }
+            hole = kind >= 4 || (kind == 2 && hole);
+            sb.append(TERMINATORS[random.nextInt(TERMINATORS.length)]);
+        }
+        return sb.append("T0\nM30").toString();
+    }
+}
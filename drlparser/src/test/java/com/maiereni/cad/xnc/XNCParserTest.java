@@ -17,15 +17,16 @@
  */
 package com.maiereni.cad.xnc;
 
-import com.maiereni.cad.xnc.bo.DrillHole;
-import com.maiereni.cad.xnc.bo.Move;
-import com.maiereni.cad.xnc.bo.SelectTool;
-import com.maiereni.cad.xnc.bo.Tool;
+import com.maiereni.cad.xnc.bo.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.Test;
 
+import java.io.StringReader;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -244,5 +245,319 @@ public class XNCParserTest {
             fail();
         }
     }
-}
 
+    @Test
+    public void testStreamLargeSample() {
+        try (Stream<Token> tokens = parser.stream(new StringReader(SAMPLE))) {
+            List<Token> expected = parser.parse(SAMPLE);
+            List<Token> actual = tokens.collect(Collectors.toList());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameToken("token " + i, expected.get(i), actual.get(i));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to stream a larger string", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testParseWithStatus() {
+        try {
+            XNCParseResult result = parser.parseWithStatus(new StringReader(SAMPLE));
+            assertEquals(38, result.getTokens().size());
+            RN1PrinterStatus status = result.getStatus();
+            RN1PrinterStatus expected = RN1PrinterStatusFactory.get().getInitialized(result.getTokens());
+            assertTrue(status.getMaxX() == 55.675f);
+            assertTrue(status.getMinY() == -73.66f);
+            assertEquals(expected.toString(), status.toString());
+            assertEquals(6, status.getTools().size());
+            assertEquals(7, status.getHoleCount("1"));
+            assertEquals(15, status.getHoleCount("2"));
+            assertEquals(0, status.getHoleCount("3"));
+            assertEquals(expected.getHoleCounts(), status.getHoleCounts());
+            RN1PrinterStatus tableStatus = RN1PrinterStatusFactory.get().getInitialized(
+                    parser.parseTable(new StringReader(SAMPLE)));
+            assertEquals(expected.toString(), tableStatus.toString());
+            assertEquals(expected.getHoleCounts(), tableStatus.getHoleCounts());
+        } catch (Exception e) {
+            logger.error("Failed to parse with the status", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testParseWithHandler() {
+        try {
+            float[] sums = new float[3];
+            StringBuilder calls = new StringBuilder();
+            parser.parse(new StringReader(SAMPLE), new XNCHandler() {
+                @Override
+                public void onTool(String id, float diameter) {
+                    calls.append('T').append(id);
+                }
+
+                @Override
+                public void onHeaderEnd() {
+                    calls.append('%');
+                }
+
+                @Override
+                public void onSelect(String id) {
+                    calls.append('S').append(id);
+                }
+
+                @Override
+                public void onDrill(float x, float y) {
+                    sums[0]++;
+                    sums[1] += x;
+                    sums[2] += y;
+                }
+            });
+            assertEquals("T1T2T3T4T5T6%S1S2S0", calls.toString());
+            assertTrue(sums[0] == 22f);
+            float x = 0f, y = 0f;
+            for (Token token : parser.parse(SAMPLE)) {
+                if (token instanceof DrillHole) {
+                    x += ((DrillHole) token).getX();
+                    y += ((DrillHole) token).getY();
+                }
+            }
+            assertTrue(sums[1] == x);
+            assertTrue(sums[2] == y);
+        } catch (Exception e) {
+            logger.error("Failed to parse with a handler", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testLenientParse() {
+        String content = "M48\nT1C0.400\n%\nT1\nX1.0Y1.0\nX1.0Y\nbad\nX2.0Y2.0\nT1C\nM30";
+        try {
+            XNCParser lenientParser = new XNCParser();
+            lenientParser.setDiagnostics(new XNCDiagnostics(2));
+            List<Token> tokens = lenientParser.parse(content);
+            assertEquals(7, tokens.size());
+            XNCDiagnostics diagnostics = lenientParser.getDiagnostics();
+            assertEquals(3, diagnostics.getCount());
+            assertTrue(diagnostics.isTruncated());
+            assertEquals(2, diagnostics.getDiagnostics().size());
+            XNCDiagnostic diagnostic = diagnostics.getDiagnostics().get(0);
+            assertEquals(6, diagnostic.getLineNumber());
+            assertEquals(-1L, diagnostic.getOffset());
+            assertEquals("X1.0Y", diagnostic.getLine());
+            assertEquals("Malformed coordinates", diagnostic.getReason());
+            assertEquals("Unknown instruction", diagnostics.getDiagnostics().get(1).getReason());
+            DrillHoleTable table = lenientParser.parseTable(new StringReader(content));
+            assertEquals(2, table.size());
+            assertEquals(0, table.getToolIndex(1));
+            assertEquals(6, diagnostics.getCount());
+        } catch (Exception e) {
+            logger.error("Failed to parse leniently", e);
+            fail();
+        }
+        try (XNCTokenIterator iterator = new XNCTokenIterator(new StringReader(content), new XNCLexer(),
+                new XNCDiagnostics())) {
+            int count = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+            assertEquals(7, count);
+        } catch (Exception e) {
+            logger.error("Failed to iterate leniently", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testParseRepeatHoles() {
+        String content = "M48\nT1C0.400\n%\nT1\nX1.0Y1.0\nR3X0.5\n; comment\nR2Y-1.0\nX5.0Y5.0\nM30";
+        try {
+            List<Token> tokens = parser.parse(content);
+            assertEquals(9, tokens.size());
+            assertTrue(tokens.get(5) instanceof RepeatHole);
+            RepeatHole repeatHole = (RepeatHole) tokens.get(5);
+            assertEquals(3, repeatHole.getCount());
+            assertTrue(repeatHole.getX() == 1.0f);
+            assertTrue(repeatHole.getStepX() == 0.5f);
+            assertTrue(repeatHole.getStepY() == 0f);
+            assertTrue(repeatHole.getDrillHole(3).getX() == 2.5f);
+            repeatHole = (RepeatHole) tokens.get(6);
+            assertTrue(repeatHole.getX() == 2.5f);
+            assertTrue(repeatHole.getDrillHole(2).getY() == -1.0f);
+
+            RN1PrinterStatus status = parser.parseWithStatus(new StringReader(content)).getStatus();
+            assertEquals(7, status.getHoleCount("1"));
+            DrillHoleTable table = parser.parseTable(new StringReader(content));
+            assertEquals(7, table.size());
+            assertTrue(table.getX(3) == 2.5f);
+            assertTrue(table.getY(5) == -1.0f);
+        } catch (Exception e) {
+            logger.error("Failed to parse repeat holes", e);
+            fail();
+        }
+        try {
+            parser.parse("M48\nT1C0.400\n%\nT1\nR3X0.5\nM30");
+            fail();
+        } catch (Exception e) {
+            assertEquals("Cannot interpret token 'R3X0.5' at line 5", e.getMessage());
+        }
+        assertEquals("Malformed repeat or no hole to repeat", XNCLexer.diagnose("R3"));
+    }
+
+    @Test
+    public void testIteratorReportsLine() {
+        try (XNCTokenIterator iterator = parser.iterator(new StringReader("M48\n; comment\nX1.0Y1.0\nbad\n"))) {
+            assertTrue(iterator.next() instanceof StartHeader);
+            assertTrue(iterator.next() instanceof DrillHole);
+            try {
+                iterator.hasNext();
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("Cannot interpret token 'bad' at line 4", e.getMessage());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to iterate", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testLexerDecodesFormat() {
+        XNCLexer lexer = new XNCLexer(1.5f, 0f);
+        assertEquals(Tokens.drill, lexer.lex("X1.504Y-0.0005"));
+        assertEquals(3.004f, lexer.getX(), 1e-6f);
+        assertEquals(-0.0005f, lexer.getY(), 1e-6f);
+        assertNull(lexer.lex("X1Y2"));
+        assertEquals(Tokens.metric, lexer.lex("METRIC,TZ"));
+        assertEquals("TZ", lexer.getText());
+        assertEquals(Tokens.drill, lexer.lex("X1500Y-2"));
+        assertTrue(lexer.getX() == 3.0f);
+        assertTrue(lexer.getY() == -0.002f);
+        assertEquals(Tokens.metric, lexer.lex("METRIC,LZ,000.000"));
+        assertEquals(Tokens.move, lexer.lex("G00X0015Y-00002"));
+        assertTrue(lexer.getX() == 3.0f);
+        assertTrue(lexer.getY() == -0.02f);
+        assertEquals(Tokens.drill, lexer.lex("X1.5Y2"));
+        assertTrue(lexer.getX() == 3.0f);
+        assertTrue(lexer.getY() == 200.0f);
+        assertEquals(Tokens.metric, lexer.lex("METRIC"));
+        assertNull(lexer.lex("X1Y2"));
+    }
+
+    private static final String[] EDGE_CASES = {
+            "", "X", "X1Y2", "X1.Y2.0", "X.5Y2.0", "X1.5Y2.5Z", "X-1.5Y-2.5", "X--1.5Y2.5", "Y1.5X2.5",
+            "X123456789.123456789Y-0.000000001", "X16777217.0Y1.0", "X0.16777217Y1.0",
+            "G00", "G01", "G90", "G", "G00X1.5Y2.5", "G01X1.5Y2.5", "G000X1.5Y2.5", "G00X1.5", "G00X-1.5Y-2.5x",
+            "T", "T0", "T01", "T1C", "T1C1", "T1C1.5", "T1C-1.5", "T01C0.400", "TC1.5", "T1D1.5",
+            "M", "M15", "M16", "M30", "M48", "M31", "M480", "METRIC", "METRIC,TZ", "METRI",
+            "FMAT", "FMAT,2", "FMAT,2\u0085", "FMA", "%", "%%", " X1.5Y2.5", "X1.5Y2.5 "
+    };
+
+    @Test
+    public void testLexerMatchesPatterns() {
+        XNCLexer lexer = new XNCLexer();
+        for (String line : SAMPLE.split("\n")) {
+            assertSameToken(line, expectedToken(line), lexer.nextToken(line));
+        }
+        for (String line : EDGE_CASES) {
+            assertSameToken(line, expectedToken(line), lexer.nextToken(line));
+        }
+    }
+
+    @Test
+    public void testLexerDecodesLikeParseFloat() {
+        XNCLexer lexer = new XNCLexer();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            String x = randomDecimal(random), y = randomDecimal(random);
+            DrillHole drillHole = (DrillHole) lexer.nextToken("X" + x + "Y" + y);
+            // the parser always adds the offset, which turns -0.0 into 0.0
+            assertEquals(x, Float.floatToIntBits(Float.parseFloat(x) + 0f), Float.floatToIntBits(drillHole.getX()));
+            assertEquals(y, Float.floatToIntBits(Float.parseFloat(y) + 0f), Float.floatToIntBits(drillHole.getY()));
+        }
+    }
+
+    private static String randomDecimal(Random random) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextBoolean()) {
+            sb.append('-');
+        }
+        int intDigits = 1 + random.nextInt(6), fractionDigits = 1 + random.nextInt(8);
+        for (int i = 0; i < intDigits; i++) {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        sb.append('.');
+        for (int i = 0; i < fractionDigits; i++) {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The regular expression based interpretation of a line, as the parser did it before the lexer
+     */
+    private static Token expectedToken(String s) {
+        Token ret = null;
+        for (Tokens token : Tokens.values()) {
+            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile(token.getPattern()).matcher(s);
+            if (matcher.matches()) {
+                switch (token) {
+                    case drill:
+                        ret = new DrillHole(Float.parseFloat(matcher.group(1)) + 0f, Float.parseFloat(matcher.group(5)) + 0f);
+                        break;
+                    case move:
+                        ret = new Move(Float.parseFloat(matcher.group(1)) + 0f, Float.parseFloat(matcher.group(5)) + 0f);
+                        break;
+                    case select:
+                        ret = new SelectTool(s.substring(1));
+                        break;
+                    case tool:
+                        ret = new Tool(matcher.group(1), Float.parseFloat(matcher.group(2)));
+                        break;
+                    case format:
+                        ret = new Format(s.substring(4));
+                        break;
+                    case setDrillMode:
+                        ret = new SetDrillMode(s.substring(1));
+                        break;
+                    default:
+                        try {
+                            ret = token.getInstance();
+                        } catch (Exception e) {
+                            fail();
+                        }
+                }
+                break;
+            }
+        }
+        return ret;
+    }
+
+    private static void assertSameToken(String line, Token expected, Token actual) {
+        if (expected == null) {
+            assertNull(line, actual);
+            return;
+        }
+        assertNotNull(line, actual);
+        assertEquals(line, expected.getClass(), actual.getClass());
+        if (expected instanceof DrillHole) {
+            assertTrue(line, ((DrillHole) expected).getX() == ((DrillHole) actual).getX());
+            assertTrue(line, ((DrillHole) expected).getY() == ((DrillHole) actual).getY());
+        } else if (expected instanceof Move) {
+            assertTrue(line, ((Move) expected).getX() == ((Move) actual).getX());
+            assertTrue(line, ((Move) expected).getY() == ((Move) actual).getY());
+        } else if (expected instanceof Tool) {
+            assertEquals(line, ((Tool) expected).getId(), ((Tool) actual).getId());
+            assertTrue(line, ((Tool) expected).getDiameter() == ((Tool) actual).getDiameter());
+        } else if (expected instanceof SelectTool) {
+            assertEquals(line, ((SelectTool) expected).getId(), ((SelectTool) actual).getId());
+        } else if (expected instanceof SetDrillMode) {
+            assertEquals(line, ((SetDrillMode) expected).getMode(), ((SetDrillMode) actual).getMode());
+        } else if (expected instanceof Format) {
+            assertEquals(line, ((Format) expected).getParameters(), ((Format) actual).getParameters());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.xnc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the XNCSelectionHandler
+ *
+ * @author Petre Maierean
+ */
+public class XNCSelectionHandlerTest {
+    private static final Logger logger = LogManager.getLogger(XNCSelectionHandlerTest.class);
+
+    @Test
+    public void testHolesOfSelectedTool() {
+        try {
+            List<String> holes = new ArrayList<>();
+            XNCSelectionHandler<String> handler = new XNCSelectionHandler<>() {
+                @Override
+                protected String resolve(String id) {
+                    return id.equals("9") ? null : id;
+                }
+
+                @Override
+                public void onDrill(float x, float y) {
+                    holes.add(getSelected() + ":" + x);
+                }
+            };
+            String content = "M48\nT1C0.400\nT2C0.800\n%\nX0.5Y0.5\nT1\nX1.0Y1.0\nR2X1.0\nT2\nX4.0Y4.0\n"
+                    + "G00X5.0Y5.0\nX6.0Y6.0\nT2\nM15\nX7.0Y7.0\nT9\nX8.0Y8.0\nM30";
+            new XNCParser().parse(new StringReader(content), handler);
+            assertEquals(List.of("null:0.5", "1:1.0", "1:2.0", "1:3.0", "2:4.0", "null:6.0", "null:7.0",
+                    "null:8.0"), holes);
+        } catch (Exception e) {
+            logger.error("Failed to track the selection", e);
+            fail();
+        }
+    }
+}
@@ -19,6 +19,8 @@ package com.maiereni.cad.rml1;
 
 import com.maiereni.cad.rml1.bo.ComplexArgument;
 
+import java.io.Writer;
+
 /**
  * Defines the API of a specialized format utility to make a command in RML-1 for a certain operation
  *
@@ -33,4 +35,15 @@ public interface ComplexCommandFormat {
      * @throws Exception
      */
     String generateCommand(ComplexArgument argument) throws Exception;
+
+    /**
+     * Generates a complex command based on the argument and writes it
+     *
+     * @param argument
+     * @param writer receives the commands
+     * @throws Exception
+     */
+    default void generateCommand(ComplexArgument argument, Writer writer) throws Exception {
+        writer.write(generateCommand(argument));
+    }
 }
@@ -73,19 +73,19 @@ public class AxisArgument implements CommandArgument {
         StringWriter sw = new StringWriter();
         if (x != null) {
             sw.write("X");
-            sw.write(FloatArgument.NUMBER_FORMAT.format(x.floatValue()));
+            sw.write(FloatArgument.format(x.floatValue()));
         }
         if (y != null) {
             sw.write("Y");
-            sw.write(FloatArgument.NUMBER_FORMAT.format(y.floatValue()));
+            sw.write(FloatArgument.format(y.floatValue()));
         }
         if (z != null) {
             sw.write("Z");
-            sw.write(FloatArgument.NUMBER_FORMAT.format(z.floatValue()));
+            sw.write(FloatArgument.format(z.floatValue()));
         }
         if (a != null) {
             sw.write("A");
-            sw.write(FloatArgument.NUMBER_FORMAT.format(a.floatValue()));
+            sw.write(FloatArgument.format(a.floatValue()));
         }
         return sw.toString();
     }
@@ -37,6 +37,9 @@ public class FloatArgument implements CommandArgument {
         NUMBER_FORMAT = nf;
     }
 
+    private static final ThreadLocal<NumberFormat> FORMATS =
+            ThreadLocal.withInitial(() -> (NumberFormat) NUMBER_FORMAT.clone());
+
     private float f;
 
     public FloatArgument() {
@@ -62,8 +65,18 @@ public class FloatArgument implements CommandArgument {
         this.f = f;
     }
 
+    /**
+     * Format a value as NUMBER_FORMAT does. The format is not thread safe, so each thread uses its own copy
+     *
+     * @param f
+     * @return the formatted value
+     */
+    public static String format(double f) {
+        return FORMATS.get().format(f);
+    }
+
     @Override
     public String toString() {
-        return NUMBER_FORMAT.format(f);
+        return format(f);
     }
 }
@@ -55,7 +55,7 @@ public class PairOfFloatsArgument implements CommandArgument {
 
     @Override
     public String toString() {
-        return String.format("%s,%s", FloatArgument.NUMBER_FORMAT.format(x), FloatArgument.NUMBER_FORMAT.format(y));
+        return String.format("%s,%s", FloatArgument.format(x), FloatArgument.format(y));
     }
 
 }
@@ -60,8 +60,8 @@ public class VertexArgument implements CommandArgument {
 
     public String toString() {
         return String.format("%s,%s,%s",
-                FloatArgument.NUMBER_FORMAT.format(x),
-                FloatArgument.NUMBER_FORMAT.format(y),
-                FloatArgument.NUMBER_FORMAT.format(z));
+                FloatArgument.format(x),
+                FloatArgument.format(y),
+                FloatArgument.format(z));
     }
 }
@@ -21,6 +21,7 @@ import com.maiereni.cad.rml1.bo.ComplexArgument;
 import com.maiereni.cad.rml1.bo.VertexArgument;
 
 import java.io.StringWriter;
+import java.io.Writer;
 
 /**
  * A complex command to move and drill at a certain location in absolute coordinates
@@ -40,21 +41,35 @@ public class MoveAndDrill extends AbstractComplexCommands {
     @Override
     public String generateCommand(ComplexArgument argument) throws Exception {
         StringWriter sw = new StringWriter();
-        sw.write(getInitialize());
-        sw.append(getSpeedXY(argument.getSpeedXY()));
-        sw.append(getSpeedZ(argument.getSpeedZ()));
-        // Move to origin
-        sw.write(moveXY(argument.getX(), argument.getY()));
-        if (argument.getPoints() != null) {
-            for (VertexArgument vertex : argument.getPoints()) {
-                sw.write(moveXY(vertex.getX(), vertex.getY()));
-                sw.write(drill(argument.getZ(), vertex.getZ()));
-            }
-        } else {
+        generateCommand(argument, sw);
+        return sw.toString();
+    }
+
+    /**
+     * Writes the command one instruction at a time, so that the whole command is never held in memory
+     *
+     * @param argument
+     * @param writer
+     * @throws Exception
+     */
+    @Override
+    public void generateCommand(ComplexArgument argument, Writer writer) throws Exception {
+        if (argument == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        if (argument.getPoints() == null) {
             throw new Exception("No points have been specified");
         }
-        sw.write(getHomeCommand(argument.isReset()));
-        sw.write(getMotorOnOff(false));
-        return sw.toString();
+        writer.write(getInitialize());
+        writer.write(getSpeedXY(argument.getSpeedXY()));
+        writer.write(getSpeedZ(argument.getSpeedZ()));
+        // Move to origin
+        writer.write(moveXY(argument.getX(), argument.getY()));
+        for (VertexArgument vertex : argument.getPoints()) {
+            writer.write(moveXY(vertex.getX(), vertex.getY()));
+            writer.write(drill(argument.getZ(), vertex.getZ()));
+        }
+        writer.write(getHomeCommand(argument.isReset()));
+        writer.write(getMotorOnOff(false));
     }
 }
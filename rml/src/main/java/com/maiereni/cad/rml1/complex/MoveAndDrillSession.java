@@ -0,0 +1,126 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.rml1.complex;
+
+import com.maiereni.cad.rml1.bo.ComplexArgument;
+import com.maiereni.cad.rml1.bo.VertexArgument;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * Moves and drills in steps which are sent to the machine one after the other. The session keeps track of the
+ * state of the machine, so the initialization, the velocities and the move to the origin are written with the
+ * first step only, a velocity is written again only when it changes and the motor is stopped only when the
+ * session ends
+ *
+ * @author Petre Maierean
+ */
+public class MoveAndDrillSession extends AbstractComplexCommands {
+    private boolean initialized, ended;
+    private Float speedXY, speedZ;
+
+    /**
+     * Generates the commands of the next step
+     *
+     * @param argument
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public String generateCommand(ComplexArgument argument) throws Exception {
+        StringWriter sw = new StringWriter();
+        generateCommand(argument, sw);
+        return sw.toString();
+    }
+
+    /**
+     * Writes the commands of the next step
+     *
+     * @param argument
+     * @param writer
+     * @throws Exception
+     */
+    @Override
+    public void generateCommand(ComplexArgument argument, Writer writer) throws Exception {
+        if (argument == null) {
+            throw new Exception("The argument cannot be null");
+        }
+        if (argument.getPoints() == null) {
+            throw new Exception("No points have been specified");
+        }
+        if (ended) {
+            throw new Exception("The session has ended");
+        }
+        if (!initialized) {
+            writer.write(getInitialize());
+        }
+        if (argument.getSpeedXY() != null && !Objects.equals(speedXY, argument.getSpeedXY())) {
+            writer.write(getSpeedXY(argument.getSpeedXY()));
+            speedXY = argument.getSpeedXY();
+        }
+        if (argument.getSpeedZ() != null && !Objects.equals(speedZ, argument.getSpeedZ())) {
+            writer.write(getSpeedZ(argument.getSpeedZ()));
+            speedZ = argument.getSpeedZ();
+        }
+        if (!initialized) {
+            // Move to origin
+            writer.write(moveXY(argument.getX(), argument.getY()));
+            initialized = true;
+        }
+        for (VertexArgument vertex : argument.getPoints()) {
+            writer.write(moveXY(vertex.getX(), vertex.getY()));
+            writer.write(drill(argument.getZ(), vertex.getZ()));
+        }
+    }
+
+    /**
+     * Writes the commands that end the session: the move home, if asked for, and the motor stop
+     *
+     * @param reset
+     * @param writer
+     * @throws Exception
+     */
+    public void end(boolean reset, Writer writer) throws Exception {
+        if (ended) {
+            throw new Exception("The session has ended");
+        }
+        writer.write(getHomeCommand(reset));
+        writer.write(getMotorOnOff(false));
+        ended = true;
+    }
+
+    /**
+     * Check if the first step has been written
+     *
+     * @return
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Check if the session has ended
+     *
+     * @return
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+}
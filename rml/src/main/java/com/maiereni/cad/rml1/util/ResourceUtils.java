@@ -23,18 +23,21 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.InputStream;
-import java.util.Hashtable;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * A simple utility class that reads various configuration Pojos from resource files
+ * A simple utility class that reads various configuration Pojos from resource files. The cache is read without
+ * a lock, since the formats look their configuration up for every command they generate, from as many threads
+ * as generate commands. Two threads which miss the cache at the same time may both read the resource, and one
+ * of the objects is kept
  *
  * @author Petre Maierean
  */
 public class ResourceUtils {
     private static final Logger logger = LogManager.getLogger(ResourceHolder.class);
-    private static final Map<String, ResourceHolder> cache = new Hashtable<>();
+    private static final Map<String, ResourceHolder> cache = new ConcurrentHashMap<>();
 
     /**
      * Get a resource object of type T from local resources
@@ -46,11 +49,12 @@ public class ResourceUtils {
      * @return
      * @throws Exception
      */
-    public static synchronized <T> T getResources(String path, Locale locale, Class<T> clazz) throws Exception {
+    public static <T> T getResources(String path, Locale locale, Class<T> clazz) throws Exception {
         String actualPath = computePath(path, locale);
         T ret = null;
-        if (isCached(path, locale, clazz)) {
-            ret = cache.get(actualPath).getResource(clazz);
+        ResourceHolder cached = cache.get(actualPath);
+        if (cached != null && clazz.isInstance(cached.resource)) {
+            ret = cached.getResource(clazz);
         } else {
             ObjectMapper objectMapper = new ObjectMapper((new YAMLFactory()));
             try (InputStream is = ResourceHolder.class.getResourceAsStream(actualPath)) {
@@ -76,10 +80,10 @@ public class ResourceUtils {
      * @param <T>
      * @return
      */
-    public static synchronized <T> boolean isCached(String path, Locale locale, Class<T> clazz) {
+    public static <T> boolean isCached(String path, Locale locale, Class<T> clazz) {
         boolean ret = false;
-        String actualPath = computePath(path, locale);
-        if (cache.containsKey(actualPath) && clazz.isInstance(cache.get(actualPath).resource)) {
+        ResourceHolder cached = cache.get(computePath(path, locale));
+        if (cached != null && clazz.isInstance(cached.resource)) {
             ret = true;
         }
         return ret;
@@ -97,7 +101,7 @@ public class ResourceUtils {
     }
 
     private static class ResourceHolder {
-        private Object resource;
+        private final Object resource;
 
         public ResourceHolder(Object resource) {
             this.resource = resource;
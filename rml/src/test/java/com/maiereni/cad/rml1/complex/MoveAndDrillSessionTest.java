@@ -0,0 +1,130 @@
+/**
+ * ================================================================
+ * Copyright (c) 2020-2021 Maiereni Software and Consulting Inc
+ * ================================================================
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.cad.rml1.complex;
+
+import com.maiereni.cad.rml1.bo.ComplexArgument;
+import com.maiereni.cad.rml1.bo.VertexArgument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the Move and Drill session
+ *
+ * @author Petre Maierean
+ */
+public class MoveAndDrillSessionTest {
+    private static final Logger logger = LogManager.getLogger(MoveAndDrillSessionTest.class);
+
+    @Test
+    public void testNullArgument() {
+        try {
+            new MoveAndDrillSession().generateCommand(null);
+            fail();
+        } catch (Exception e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testFirstStepAsMoveAndDrill() {
+        try {
+            ComplexArgument complexArgument = getTestArgument(10f, 10f);
+            MoveAndDrillSession session = new MoveAndDrillSession();
+            StringWriter sw = new StringWriter();
+            session.generateCommand(complexArgument, sw);
+            session.end(false, sw);
+            assertEquals(new MoveAndDrill().generateCommand(complexArgument), sw.toString());
+        } catch (Exception e) {
+            logger.error("Error generating the commmand", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testPreambleOnce() {
+        try {
+            MoveAndDrillSession session = new MoveAndDrillSession();
+            String first = session.generateCommand(getTestArgument(10f, 10f));
+            String second = session.generateCommand(getTestArgument(20f, 20f));
+            StringWriter sw = new StringWriter();
+            session.end(true, sw);
+            logger.debug("The steps are\r\n{}\r\n{}\r\n{}", first, second, sw);
+            assertTrue(first.startsWith("^IN;"));
+            assertFalse(first.contains("!MC"));
+            assertFalse(second.contains("IN;"));
+            assertFalse(second.contains("!MC"));
+            assertTrue(second.startsWith("M 20,20;"));
+            assertTrue(sw.toString().endsWith("!MC 0;"));
+            assertTrue(session.isEnded());
+        } catch (Exception e) {
+            logger.error("Error generating the commmand", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testSpeedChange() {
+        try {
+            MoveAndDrillSession session = new MoveAndDrillSession();
+            String first = session.generateCommand(getTestArgument(10f, 10f));
+            ComplexArgument complexArgument = getTestArgument(20f, 20f);
+            complexArgument.setSpeedXY(10f);
+            String second = session.generateCommand(complexArgument);
+            assertTrue(first.contains("F 15;"));
+            assertTrue(second.startsWith("F 10;"));
+        } catch (Exception e) {
+            logger.error("Error generating the commmand", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testEnded() {
+        MoveAndDrillSession session = new MoveAndDrillSession();
+        try {
+            session.end(false, new StringWriter());
+        } catch (Exception e) {
+            logger.error("Error ending the session", e);
+            fail();
+        }
+        try {
+            session.generateCommand(getTestArgument(10f, 10f));
+            fail();
+        } catch (Exception e) {
+            assertEquals("The session has ended", e.getMessage());
+        }
+    }
+
+    private ComplexArgument getTestArgument(float x, float y) {
+        ComplexArgument ret = new ComplexArgument();
+        ret.setSpeedXY(15f);
+        ret.setZ(40f);
+        List<VertexArgument> points = new ArrayList<>();
+        points.add(new VertexArgument(x, y, -80f));
+        points.add(new VertexArgument(x + 5, y, -80f));
+        ret.setPoints(points);
+        return ret;
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.Test;
 
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -73,6 +74,32 @@ public class MoveAndDrillTest {
         }
     }
 
+    @Test
+    public void testWriteADrillPlan() {
+        try {
+            ComplexArgument complexArgument = new ComplexArgument();
+            complexArgument.setPoints(getTestVertexArgument());
+            complexArgument.setSpeedXY(15f);
+            complexArgument.setReset(true);
+            StringWriter sw = new StringWriter();
+            generator.generateCommand(complexArgument, sw);
+            assertEquals(generator.generateCommand(complexArgument), sw.toString());
+        } catch (Exception e) {
+            logger.error("Error writing the commmand", e);
+            fail();
+        }
+    }
+
+    @Test
+    public void testWriteNoPoints() {
+        StringWriter sw = new StringWriter();
+        try {
+            generator.generateCommand(new ComplexArgument(), sw);
+            fail();
+        } catch (Exception e) {
+            assertEquals("Nothing should be written", 0, sw.getBuffer().length());
+        }
+    }
 
     private List<VertexArgument> getTestVertexArgument() {
         List<VertexArgument> ret = new ArrayList<>();
@@ -33,6 +33,9 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -80,6 +83,28 @@ public class ResourceUtilsTest {
         }
     }
 
+    @Test
+    public void testReadConfigurationConcurrently() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Description>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> ResourceUtils.getResources("/description", Locale.ENGLISH,
+                        Description.class)));
+            }
+            for (Future<Description> result : results) {
+                assertNotNull(result.get());
+            }
+            Description cached = ResourceUtils.getResources("/description", Locale.ENGLISH, Description.class);
+            assertSame(cached, ResourceUtils.getResources("/description", Locale.ENGLISH, Description.class));
+        } catch (Exception e) {
+            logger.error("There was an error", e);
+            fail("Failed to process");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private String generateSeedConfiguration() throws Exception {
         Description description = new Description();
         description.setMode1(getMode1FormatConfigurations());